@@ -0,0 +1,24 @@
+package org.adaptms.hqlbuilder.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all benchmarks with the GC profiler attached, so that allocation rate is reported next to throughput.
+ * Accepts the usual JMH command line options, e.g. {@code java -jar benchmarks.jar QueryBuildBenchmark -f 1}.
+ *
+ * @author ppolyakov at 17.10.2026 21:30
+ */
+public class BenchmarkRunner {
+
+    public static void main( String[] args ) throws RunnerException, CommandLineOptionException {
+        new Runner( new OptionsBuilder()
+                .parent( new CommandLineOptions( args ) )
+                .addProfiler( GCProfiler.class )
+                .build() ).run();
+    }
+}
@@ -0,0 +1,31 @@
+package org.adaptms.hqlbuilder.benchmarks;
+
+import org.adaptms.hqlbuilder.property.EntityPath;
+
+import javax.persistence.Entity;
+
+/**
+ * @author ppolyakov at 17.10.2026 21:30
+ */
+@Entity
+public class Customer {
+
+    public static DSL root() { return new DSL( null ); }
+
+    public static DSL alias( String alias ) { return new DSL( alias ); }
+
+    public static class DSL extends EntityPath {
+        private DSL( String previousPath ) { super( previousPath ); }
+        public EntityPath id() { return addToPrevious( "id" ); }
+        public EntityPath name() { return addToPrevious( "name" ); }
+        public EntityPath email() { return addToPrevious( "email" ); }
+        public EntityPath city() { return addToPrevious( "city" ); }
+        public EntityPath active() { return addToPrevious( "active" ); }
+    }
+
+    private Long id;
+    private String name;
+    private String email;
+    private String city;
+    private boolean active;
+}
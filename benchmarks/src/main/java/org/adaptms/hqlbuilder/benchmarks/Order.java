@@ -0,0 +1,34 @@
+package org.adaptms.hqlbuilder.benchmarks;
+
+import org.adaptms.hqlbuilder.property.EntityPath;
+
+import javax.persistence.Entity;
+import java.math.BigDecimal;
+
+/**
+ * @author ppolyakov at 17.10.2026 21:30
+ */
+@Entity
+public class Order {
+
+    public static DSL root() { return new DSL( null ); }
+
+    public static DSL alias( String alias ) { return new DSL( alias ); }
+
+    public static class DSL extends EntityPath {
+        private DSL( String previousPath ) { super( previousPath ); }
+        public EntityPath id() { return addToPrevious( "id" ); }
+        public EntityPath number() { return addToPrevious( "number" ); }
+        public EntityPath status() { return addToPrevious( "status" ); }
+        public EntityPath amount() { return addToPrevious( "amount" ); }
+        public EntityPath created() { return addToPrevious( "created" ); }
+        public Customer.DSL customer() { return Customer.alias( step( "customer" ) ); }
+    }
+
+    private Long id;
+    private String number;
+    private String status;
+    private BigDecimal amount;
+    private Long created;
+    private Customer customer;
+}
@@ -0,0 +1,162 @@
+package org.adaptms.hqlbuilder.benchmarks;
+
+import org.adaptms.hqlbuilder.builder.HQLBuilder;
+import org.adaptms.hqlbuilder.builder.QueryCache;
+import org.adaptms.hqlbuilder.expression.Expressions;
+import org.adaptms.hqlbuilder.expression.join.JoinType;
+import org.adaptms.hqlbuilder.expression.order.QueryOrderDirection;
+import org.adaptms.hqlbuilder.expression.where.CommonWhereExpression;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction and rendering of typical queries: every benchmark creates a builder from scratch and builds it,
+ * as a request handler would. {@link #handWritten} is the baseline of the same query written as a plain string.
+ *
+ * @author ppolyakov at 17.10.2026 21:30
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class QueryBuildBenchmark {
+
+    private static final String[] STATUSES = { "NEW", "PAID", "SHIPPED", "CANCELLED" };
+
+    @Param( { "true", "false" } )
+    public boolean cache;
+
+    @Param( { "20" } )
+    public int whereWidth;
+
+    @Param( { "8" } )
+    public int nestingDepth;
+
+    @Param( { "1000" } )
+    public int inSize;
+
+    private List<Long> ids;
+    private HQLBuilder base;
+
+    @Setup
+    public void setup() {
+        QueryCache.clear();
+        QueryCache.setEnabled( cache );
+
+        ids = new ArrayList<>( inSize );
+        for ( long i = 0; i < inSize; i++ ) ids.add( i );
+
+        base = HQLBuilder.select( Order.class, "o" )
+                .join( JoinType.LEFT, Customer.class, "c", Expressions.eq( Customer.alias( "c" ).id(), Order.alias( "o" ).customer().id() ) )
+                .where( Expressions.eq( Order.alias( "o" ).status(), "NEW" ) )
+                .where( Expressions.like( Customer.alias( "c" ).name(), Expressions.wrapLike( "smith" ) ) );
+    }
+
+    @Benchmark
+    public void simpleSelect( Blackhole blackhole ) {
+        HQLBuilder builder = HQLBuilder.select( Order.class, "o" )
+                .where( Expressions.eq( Order.alias( "o" ).number(), "A-42" ) );
+        consume( blackhole, builder );
+    }
+
+    @Benchmark
+    public void handWritten( Blackhole blackhole ) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put( "number", "A-42" );
+        blackhole.consume( "select o from " + Order.class.getCanonicalName() + " o where o.number = :number" );
+        blackhole.consume( variables );
+    }
+
+    @Benchmark
+    public void wideWhere( Blackhole blackhole ) {
+        HQLBuilder builder = HQLBuilder.select( Order.class, "o" );
+        for ( int i = 0; i < whereWidth; i++ ) {
+            switch ( i % 4 ) {
+                case 0: builder.where( Expressions.eq( Order.alias( "o" ).status(), STATUSES[ i % STATUSES.length ] ) ); break;
+                case 1: builder.where( Expressions.ge( Order.alias( "o" ).amount(), i ) ); break;
+                case 2: builder.where( Expressions.like( Order.alias( "o" ).customer().name(), Expressions.wrapLike( "n" + i ) ) ); break;
+                default: builder.where( Expressions.isNotNull( Order.alias( "o" ).created() ) ); break;
+            }
+        }
+        consume( blackhole, builder );
+    }
+
+    @Benchmark
+    public void deepNesting( Blackhole blackhole ) {
+        HQLBuilder builder = HQLBuilder.select( Order.class, "o" )
+                .where( nested( nestingDepth ) );
+        consume( blackhole, builder );
+    }
+
+    @Benchmark
+    public void largeIn( Blackhole blackhole ) {
+        HQLBuilder builder = HQLBuilder.select( Order.class, "o" )
+                .where( Expressions.in( Order.alias( "o" ).id(), ids ) );
+        consume( blackhole, builder );
+    }
+
+    @Benchmark
+    public void subquery( Blackhole blackhole ) {
+        HQLBuilder builder = HQLBuilder.select( Order.class, "o" )
+                .where( Expressions.in( Order.alias( "o" ).customer().id(),
+                        HQLBuilder.select( Customer.class, "c" )
+                                .column( Customer.alias( "c" ).id() )
+                                .where( Expressions.eq( Customer.alias( "c" ).city(), "Berlin" ) )
+                                .where( Expressions.eq( Customer.alias( "c" ).active(), true ) ) ) )
+                .where( Expressions.eq( Order.alias( "o" ).status(), "PAID" ) );
+        consume( blackhole, builder );
+    }
+
+    @Benchmark
+    public void joins( Blackhole blackhole ) {
+        HQLBuilder builder = HQLBuilder.select( Order.class, "o" )
+                .join( JoinType.LEFT, Customer.class, "c", Expressions.eq( Customer.alias( "c" ).id(), Order.alias( "o" ).customer().id() ) )
+                .join( JoinType.INNER, Order.class, "prev", Expressions.eq( Order.alias( "prev" ).customer().id(), Customer.alias( "c" ).id() ) )
+                .where( Expressions.eq( Customer.alias( "c" ).city(), "Berlin" ) )
+                .orderBy( Order.alias( "o" ).created(), QueryOrderDirection.DESC );
+        consume( blackhole, builder );
+    }
+
+    @Benchmark
+    public void cloneAndOrder( Blackhole blackhole ) {
+        HQLBuilder builder = HQLBuilder.clone( base )
+                .orderBy( Order.alias( "o" ).created(), QueryOrderDirection.DESC );
+        consume( blackhole, builder );
+    }
+
+    @Benchmark
+    public String renderPrebuilt() {
+        return base.build();
+    }
+
+    private CommonWhereExpression nested( int depth ) {
+        CommonWhereExpression leaf = Expressions.eq( Order.alias( "o" ).status(), STATUSES[ depth % STATUSES.length ] );
+        if ( depth == 0 ) return leaf;
+        return depth % 2 == 0
+                ? Expressions.and( leaf, nested( depth - 1 ) )
+                : Expressions.or( leaf, nested( depth - 1 ) );
+    }
+
+    private static void consume( Blackhole blackhole, HQLBuilder builder ) {
+        blackhole.consume( builder.build() );
+        blackhole.consume( builder.getVariables() );
+    }
+}
@@ -0,0 +1,175 @@
+package org.adaptms.hqlbuilder.jpa;
+
+import org.adaptms.hqlbuilder.builder.BuiltHql;
+import org.adaptms.hqlbuilder.builder.HQLBuilder;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Runs independent queries concurrently, each one with its own {@link EntityManager}, e.g. a page and its count:
+ * {@code executor.page( builder, MyEntity.class, 0, 20 )}.
+ * <p>
+ * By default queries run on virtual threads on Java 21 and later, and on a daemon pool of {@link #DEFAULT_POOL_SIZE}
+ * threads otherwise. The pool queues up to {@link #DEFAULT_QUEUE_CAPACITY} queries; when the queue is full, queries run
+ * on the calling thread, which slows down the callers instead of piling up work. Executors created by default are
+ * shut down by {@link #close()}, queries submitted afterwards fail with {@link RejectedExecutionException}. Any other {@link Executor} may be given instead, it is left to the caller to shut down.
+ * Builders are read from the worker threads, don't change them until the futures complete.
+ *
+ * @author ppolyakov at 18.10.2026 12:20
+ */
+public class AsyncExecutor implements AutoCloseable {
+    public static final int DEFAULT_POOL_SIZE = Math.min( 16, Runtime.getRuntime().availableProcessors() * 2 );
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final Executor executor;
+    private final boolean ownExecutor;
+
+    /**
+     * Executor with virtual threads or a bounded pool, shut down by {@link #close()}
+     * @param entityManagerFactory factory of the persistence unit
+     */
+    public AsyncExecutor( EntityManagerFactory entityManagerFactory ) {
+        this( entityManagerFactory, createDefaultExecutor(), true );
+    }
+
+    /**
+     * @param entityManagerFactory factory of the persistence unit
+     * @param executor executor to run queries on, it is not shut down by {@link #close()}
+     */
+    public AsyncExecutor( EntityManagerFactory entityManagerFactory, Executor executor ) {
+        this( entityManagerFactory, executor, false );
+    }
+
+    private AsyncExecutor( EntityManagerFactory entityManagerFactory, Executor executor, boolean ownExecutor ) {
+        if ( null == entityManagerFactory ) throw new IllegalArgumentException( "EntityManagerFactory may not be null." );
+        if ( null == executor ) throw new IllegalArgumentException( "Executor may not be null." );
+        this.entityManagerFactory = entityManagerFactory;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+    }
+
+    /**
+     * Run work with a new {@link EntityManager} that is closed afterwards
+     * @param work work to do
+     * @param <R> type of the result
+     * @return future result, completed with {@link RejectedExecutionException} if the executor doesn't accept the work
+     */
+    public <R> CompletableFuture<R> submit( Function<QueryExecutor, R> work ) {
+        try {
+            return CompletableFuture.supplyAsync( () -> {
+                EntityManager entityManager = entityManagerFactory.createEntityManager();
+                try {
+                    return work.apply( new QueryExecutor( entityManager ) );
+                } finally {
+                    entityManager.close();
+                }
+            }, executor );
+        } catch ( RejectedExecutionException e ) {
+            CompletableFuture<R> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally( e );
+            return rejected;
+        }
+    }
+
+    public <T> CompletableFuture<List<T>> list( HQLBuilder builder, Class<T> resultType ) {
+        return submit( executor -> executor.list( builder, resultType ) );
+    }
+
+    public <T> CompletableFuture<List<T>> list( HQLBuilder builder, Class<T> resultType, int firstResult, int maxResults ) {
+        return submit( executor -> executor.list( builder, resultType, firstResult, maxResults ) );
+    }
+
+    public CompletableFuture<Long> count( HQLBuilder builder ) {
+        return submit( executor -> executor.count( builder ) );
+    }
+
+    public CompletableFuture<Boolean> exists( HQLBuilder builder ) {
+        return submit( executor -> executor.exists( builder ) );
+    }
+
+    /**
+     * Read a page and count all rows of the query at the same time
+     * @param builder SELECT query builder
+     * @param resultType type of the result rows
+     * @param firstResult position of the first row, starting with 0
+     * @param maxResults maximum number of rows
+     * @param <T> type of the result rows
+     * @return future page
+     */
+    public <T> CompletableFuture<Page<T>> page( HQLBuilder builder, Class<T> resultType, int firstResult, int maxResults ) {
+        // the count query is derived and built before going async, so that both tasks only read the builder
+        HQLBuilder count = builder.toCountQuery();
+        BuiltHql built = count.buildWithShape();
+        return list( builder, resultType, firstResult, maxResults )
+                .thenCombine( submit( executor -> executor.count( built, count ) ), Page::new );
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Shut down the executor if it was created by this instance. Queries submitted before still complete
+     */
+    @Override
+    public void close() {
+        if ( ownExecutor ) ( ( ExecutorService ) executor ).shutdown();
+    }
+
+    /**
+     * Like {@link ThreadPoolExecutor.CallerRunsPolicy}, but throws instead of silently dropping tasks after shutdown
+     */
+    private static final RejectedExecutionHandler CALLER_RUNS = ( task, pool ) -> {
+        if ( pool.isShutdown() ) throw new RejectedExecutionException( "AsyncExecutor is closed." );
+        task.run();
+    };
+
+    /**
+     * Virtual threads if available, bounded pool otherwise
+     */
+    private static ExecutorService createDefaultExecutor() {
+        try {
+            Method factory = Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" );
+            return ( ExecutorService ) factory.invoke( null );
+        } catch ( ReflectiveOperationException e ) {
+            // Java before 21
+        }
+        return createPool( DEFAULT_POOL_SIZE, DEFAULT_QUEUE_CAPACITY );
+    }
+
+    /**
+     * Daemon pool with a bounded queue, running tasks on the submitting thread when the queue is full.
+     * Tasks submitted after shutdown are rejected with {@link RejectedExecutionException}
+     * @param threads number of threads
+     * @param queueCapacity maximum number of waiting tasks
+     * @return new pool
+     */
+    static ThreadPoolExecutor createPool( int threads, int queueCapacity ) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread( task, "hql-builder-async-" + counter.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        };
+        ThreadPoolExecutor pool = new ThreadPoolExecutor( threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>( queueCapacity ), factory, CALLER_RUNS );
+        pool.allowCoreThreadTimeOut( true );
+        return pool;
+    }
+}
@@ -0,0 +1,150 @@
+package org.adaptms.hqlbuilder.jpa;
+
+import org.adaptms.hqlbuilder.builder.BuilderMode;
+import org.adaptms.hqlbuilder.builder.HQLBuilder;
+import org.adaptms.hqlbuilder.expression.Expressions;
+import org.adaptms.hqlbuilder.property.EntityPath;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Runs UPDATE and DELETE builders in chunks of rows, each chunk in its own transaction, so that a large statement
+ * never locks all matching rows at once.
+ * <p>
+ * Rows are split by keyset batches of the id: for every chunk the greatest id among the next {@link #getChunkSize()}
+ * matching rows is selected, and the statement is executed with its where clause unchanged plus
+ * {@code id > :previous and id <= :last}. Ids must be comparable and unique. Chunks that were committed stay committed
+ * if a later chunk fails, the failed one is rolled back; pass {@link BulkProgress#getLastId()} of the last committed
+ * chunk to {@link #execute(HQLBuilder, Object, Consumer)} to resume after it.
+ * <p>
+ * Uses resource-local transactions of an {@link EntityManager} created from the factory. Builders must use named parameters.
+ *
+ * @author ppolyakov at 18.10.2026 11:40
+ */
+public class BulkExecutor {
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    public static final String DEFAULT_ID_PROPERTY = "id";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private String idProperty = DEFAULT_ID_PROPERTY;
+
+    public BulkExecutor( EntityManagerFactory entityManagerFactory ) {
+        if ( null == entityManagerFactory ) throw new IllegalArgumentException( "EntityManagerFactory may not be null." );
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * Execute the statement in chunks
+     * @param bulk UPDATE or DELETE builder, it is not changed
+     * @return progress after the last chunk
+     */
+    public BulkProgress execute( HQLBuilder bulk ) {
+        return execute( bulk, progress -> { } );
+    }
+
+    /**
+     * Execute the statement in chunks
+     * @param bulk UPDATE or DELETE builder, it is not changed
+     * @param listener called after every committed chunk
+     * @return progress after the last chunk
+     */
+    public BulkProgress execute( HQLBuilder bulk, Consumer<BulkProgress> listener ) {
+        return execute( bulk, null, listener );
+    }
+
+    /**
+     * Execute the statement in chunks, skipping rows up to the given id, e.g. to resume after a failure
+     * @param bulk UPDATE or DELETE builder, it is not changed
+     * @param startAfterId only rows with a greater id are changed, {@code null} for all rows
+     * @param listener called after every committed chunk
+     * @return progress after the last chunk, counting only the chunks of this call
+     */
+    public BulkProgress execute( HQLBuilder bulk, Object startAfterId, Consumer<BulkProgress> listener ) {
+        if ( bulk.getMode() != BuilderMode.UPDATE && bulk.getMode() != BuilderMode.DELETE )
+            throw new IllegalStateException( "Only UPDATE and DELETE queries may be chunked, got: " + bulk.getMode().name() );
+        if ( bulk.getParameterNaming().isPositional() )
+            throw new IllegalStateException( "Positional parameters can't be used in chunked queries, use named parameters instead." );
+
+        long start = System.nanoTime();
+        BulkProgress progress = new BulkProgress( 0, 0, 0, startAfterId, 0 );
+
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            QueryExecutor executor = new QueryExecutor( entityManager );
+            while ( true ) {
+                EntityTransaction transaction = entityManager.getTransaction();
+                transaction.begin();
+                try {
+                    Object lastId = findLastId( executor, bulk, progress.getLastId() );
+                    if ( lastId == null ) {
+                        transaction.commit();
+                        return progress;
+                    }
+
+                    int rows = executor.executeUpdate( chunk( bulk, progress.getLastId(), lastId ) );
+                    transaction.commit();
+
+                    progress = new BulkProgress( progress.getChunks() + 1, rows, progress.getTotalRows() + rows, lastId, System.nanoTime() - start );
+                    listener.accept( progress );
+                } finally {
+                    if ( transaction.isActive() ) transaction.rollback();
+                    entityManager.clear();
+                }
+            }
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * Greatest id of the next chunk: {@code select id from Entity where ... and id > :previous order by id}
+     */
+    private Object findLastId( QueryExecutor executor, HQLBuilder bulk, Object previousId ) {
+        HQLBuilder ids = bulk.toSelectQuery();
+        ids.column( idPath() );
+        if ( previousId != null ) ids.where( Expressions.gt( idPath(), previousId ) );
+        ids.orderBy( idPath() );
+
+        List<Object> chunk = executor.list( ids, Object.class, 0, chunkSize );
+        return chunk.isEmpty() ? null : chunk.get( chunk.size() - 1 );
+    }
+
+    private HQLBuilder chunk( HQLBuilder bulk, Object previousId, Object lastId ) {
+        HQLBuilder chunk = HQLBuilder.clone( bulk );
+        if ( previousId != null ) chunk.where( Expressions.gt( idPath(), previousId ) );
+        return chunk.where( Expressions.le( idPath(), lastId ) );
+    }
+
+    private EntityPath idPath() {
+        return EntityPath.fromString( idProperty );
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @param chunkSize maximum number of rows changed in one transaction
+     */
+    public void setChunkSize( int chunkSize ) {
+        if ( chunkSize <= 0 ) throw new IllegalArgumentException( "Chunk size must be positive, got: " + chunkSize );
+        this.chunkSize = chunkSize;
+    }
+
+    public String getIdProperty() {
+        return idProperty;
+    }
+
+    /**
+     * @param idProperty name of the unique comparable property the rows are split by, {@code id} by default
+     */
+    public void setIdProperty( String idProperty ) {
+        if ( null == idProperty || idProperty.isEmpty() ) throw new IllegalArgumentException( "Id property may not be empty." );
+        this.idProperty = idProperty;
+    }
+}
@@ -0,0 +1,71 @@
+package org.adaptms.hqlbuilder.jpa;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * State of a chunked bulk statement after a chunk was committed, see {@link BulkExecutor}
+ *
+ * @author ppolyakov at 18.10.2026 11:40
+ */
+public final class BulkProgress {
+
+    private final int chunks;
+    private final int chunkRows;
+    private final long totalRows;
+    private final Object lastId;
+    private final long elapsedNanos;
+
+    BulkProgress( int chunks, int chunkRows, long totalRows, Object lastId, long elapsedNanos ) {
+        this.chunks = chunks;
+        this.chunkRows = chunkRows;
+        this.totalRows = totalRows;
+        this.lastId = lastId;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return number of committed chunks
+     */
+    public int getChunks() {
+        return chunks;
+    }
+
+    /**
+     * @return rows affected by the last chunk
+     */
+    public int getChunkRows() {
+        return chunkRows;
+    }
+
+    /**
+     * @return rows affected by all committed chunks
+     */
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    /**
+     * @return greatest id of the last chunk, the start id if nothing was processed; pass it to
+     * {@link BulkExecutor#execute(org.adaptms.hqlbuilder.builder.HQLBuilder, Object, java.util.function.Consumer)} to resume after it
+     */
+    public Object getLastId() {
+        return lastId;
+    }
+
+    public long getElapsed( TimeUnit unit ) {
+        return unit.convert( elapsedNanos, TimeUnit.NANOSECONDS );
+    }
+
+    /**
+     * @return affected rows per second since the start
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : totalRows * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkProgress{chunks=" + chunks + ", totalRows=" + totalRows + ", lastId=" + lastId
+                + ", elapsedMs=" + getElapsed( TimeUnit.MILLISECONDS ) + ", rowsPerSecond=" + Math.round( getRowsPerSecond() ) + "}";
+    }
+}
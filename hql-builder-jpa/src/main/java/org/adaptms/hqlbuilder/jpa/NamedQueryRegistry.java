@@ -0,0 +1,194 @@
+package org.adaptms.hqlbuilder.jpa;
+
+import org.adaptms.hqlbuilder.builder.HQLBuilder;
+import org.adaptms.hqlbuilder.builder.PreparedHql;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Catalogue of queries defined with builders, rendered once at registration and referenced by name.
+ * <p>
+ * Providers parse HQL lazily, on the first use of each query string, so the first requests after a start pay for it.
+ * The registry removes that cost in one of three ways:
+ * <ul>
+ *     <li>{@link #warmUp(EntityManagerFactory, Executor)} parses all queries in the background, filling the query
+ *     plan cache of the provider. Only the registered queries benefit: builders used at runtime name their
+ *     variables differently, so their HQL doesn't match the cached plans;</li>
+ *     <li>{@link #addNamedQueries(EntityManagerFactory)} registers them as JPA named queries, parsed at once;</li>
+ *     <li>{@link #writeOrmXml(Writer)} exports them as {@code orm.xml}, to be validated with the mapping at startup.</li>
+ * </ul>
+ * Queries that are exported or registered as named queries may only take values as
+ * {@link org.adaptms.hqlbuilder.expression.Expressions#param(String) parameters}.
+ *
+ * @author ppolyakov at 18.10.2026 17:00
+ */
+public class NamedQueryRegistry {
+
+    static final String WARM_UP_THREAD = "hql-builder-warm-up";
+
+    private final NavigableMap<String, PreparedHql> queries = new ConcurrentSkipListMap<>();
+
+    /**
+     * Render the builder and register it
+     * @param name unique query name
+     * @param builder query builder, it may be changed or dropped afterwards
+     * @return prepared query
+     * @throws IllegalStateException if another query is registered with the name
+     */
+    public PreparedHql register( String name, HQLBuilder builder ) {
+        if ( null == name || name.isEmpty() ) throw new IllegalArgumentException( "Query name may not be empty." );
+        if ( null == builder ) throw new IllegalArgumentException( "HQLBuilder may not be null." );
+
+        PreparedHql prepared = builder.prepare();
+        if ( queries.putIfAbsent( name, prepared ) != null )
+            throw new IllegalStateException( "Query \"" + name + "\" is already registered." );
+        return prepared;
+    }
+
+    /**
+     * @param name query name
+     * @return prepared query
+     * @throws IllegalArgumentException if there is no query with the name
+     */
+    public PreparedHql get( String name ) {
+        PreparedHql prepared = queries.get( name );
+        if ( prepared == null ) throw new IllegalArgumentException( "Unknown query \"" + name + "\"." );
+        return prepared;
+    }
+
+    /**
+     * Create a query by name, binding the values given on registration and the parameter values
+     * @param entityManager entity manager
+     * @param name query name
+     * @param resultType type of the result rows
+     * @param values values of the parameters, in order of declaration
+     * @param <T> type of the result rows
+     * @return query
+     */
+    public <T> TypedQuery<T> createQuery( EntityManager entityManager, String name, Class<T> resultType, Object... values ) {
+        return new QueryExecutor( entityManager ).createQuery( get( name ), resultType, values );
+    }
+
+    /**
+     * @return names of registered queries, in alphabetical order
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet( queries.keySet() );
+    }
+
+    /**
+     * Parse all queries in the background, on a daemon thread of its own that ends with the warm-up.
+     * Parsing blocks on the provider and possibly on the database, so it doesn't take a thread of the common pool
+     * @param entityManagerFactory factory of the persistence unit
+     * @return future number of parsed queries, see {@link #warmUp(EntityManagerFactory, Executor)}
+     */
+    public CompletableFuture<Integer> warmUp( EntityManagerFactory entityManagerFactory ) {
+        ExecutorService executor = Executors.newSingleThreadExecutor( task -> {
+            Thread thread = new Thread( task, WARM_UP_THREAD );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        try {
+            CompletableFuture<Integer> parsed = warmUp( entityManagerFactory, executor );
+            parsed.whenComplete( ( count, error ) -> executor.shutdown() );
+            return parsed;
+        } catch ( RuntimeException e ) {
+            executor.shutdown();
+            throw e;
+        }
+    }
+
+    /**
+     * Parse all queries with a new {@link EntityManager}, so the provider caches their plans
+     * @param entityManagerFactory factory of the persistence unit
+     * @param executor executor to parse on
+     * @return future number of parsed queries; it fails with the first error if some queries can't be parsed,
+     * with the errors of other queries suppressed
+     */
+    public CompletableFuture<Integer> warmUp( EntityManagerFactory entityManagerFactory, Executor executor ) {
+        return CompletableFuture.supplyAsync( () -> {
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            try {
+                int parsed = 0;
+                IllegalStateException failure = null;
+                for ( Map.Entry<String, PreparedHql> query : queries.entrySet() ) {
+                    try {
+                        entityManager.createQuery( query.getValue().getHql() );
+                        parsed++;
+                    } catch ( RuntimeException e ) {
+                        IllegalStateException error = new IllegalStateException( "Query \"" + query.getKey() + "\" can't be parsed.", e );
+                        if ( failure == null ) failure = error;
+                        else failure.addSuppressed( error );
+                    }
+                }
+                if ( failure != null ) throw failure;
+                return parsed;
+            } finally {
+                entityManager.close();
+            }
+        }, executor );
+    }
+
+    /**
+     * Register all queries as named queries of the persistence unit, for {@link EntityManager#createNamedQuery(String, Class)}
+     * @param entityManagerFactory factory of the persistence unit
+     * @throws IllegalStateException if a query has values given on registration
+     */
+    public void addNamedQueries( EntityManagerFactory entityManagerFactory ) {
+        checkParametersOnly();
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            for ( Map.Entry<String, PreparedHql> query : queries.entrySet() ) {
+                entityManagerFactory.addNamedQuery( query.getKey(), entityManager.createQuery( query.getValue().getHql() ) );
+            }
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * Write all queries as a JPA 2.2 mapping file with named queries
+     * @param writer output, not closed
+     * @throws IOException if writing fails
+     * @throws IllegalStateException if a query has values given on registration
+     */
+    public void writeOrmXml( Writer writer ) throws IOException {
+        checkParametersOnly();
+        writer.write( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" );
+        writer.write( "<entity-mappings xmlns=\"http://xmlns.jcp.org/xml/ns/persistence/orm\"\n" );
+        writer.write( "                 xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n" );
+        writer.write( "                 xsi:schemaLocation=\"http://xmlns.jcp.org/xml/ns/persistence/orm http://xmlns.jcp.org/xml/ns/persistence/orm_2_2.xsd\"\n" );
+        writer.write( "                 version=\"2.2\">\n" );
+        for ( Map.Entry<String, PreparedHql> query : queries.entrySet() ) {
+            writer.write( "    <named-query name=\"" + escapeAttribute( query.getKey() ) + "\">\n" );
+            // "]]>" can't appear inside CDATA, it is split between two sections
+            writer.write( "        <query><![CDATA[" + query.getValue().getHql().replace( "]]>", "]]]]><![CDATA[>" ) + "]]></query>\n" );
+            writer.write( "    </named-query>\n" );
+        }
+        writer.write( "</entity-mappings>\n" );
+    }
+
+    private void checkParametersOnly() {
+        for ( Map.Entry<String, PreparedHql> query : queries.entrySet() ) {
+            if ( query.getValue().hasValues() )
+                throw new IllegalStateException( "Query \"" + query.getKey() + "\" has values, named queries may only use parameters." );
+        }
+    }
+
+    private static String escapeAttribute( String value ) {
+        return value.replace( "&", "&amp;" ).replace( "\"", "&quot;" ).replace( "<", "&lt;" ).replace( ">", "&gt;" );
+    }
+}
@@ -0,0 +1,33 @@
+package org.adaptms.hqlbuilder.jpa;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Page of rows with the total number of rows of the query, see {@link AsyncExecutor#page}
+ *
+ * @author ppolyakov at 18.10.2026 12:20
+ */
+public final class Page<T> {
+
+    private final List<T> content;
+    private final long total;
+
+    public Page( List<T> content, long total ) {
+        this.content = Collections.unmodifiableList( content );
+        this.total = total;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "Page{size=" + content.size() + ", total=" + total + "}";
+    }
+}
@@ -0,0 +1,271 @@
+package org.adaptms.hqlbuilder.jpa;
+
+import org.adaptms.hqlbuilder.builder.BuiltHql;
+import org.adaptms.hqlbuilder.builder.HQLBuilder;
+import org.adaptms.hqlbuilder.builder.PreparedHql;
+import org.adaptms.hqlbuilder.expression.Parameter;
+import org.adaptms.hqlbuilder.metrics.ExecutionEvent;
+import org.adaptms.hqlbuilder.metrics.QueryListeners;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Executes builders with an {@link EntityManager}.
+ * <p>
+ * Queries are created from {@link HQLBuilder#build()}, so builders of the same shape always pass the very same
+ * HQL string and hit the query plan cache of the provider. Variables are bound by name, or by position
+ * for {@link org.adaptms.hqlbuilder.builder.ParameterNaming#POSITIONAL}; arrays are bound as lists, except binary and
+ * character arrays, which are scalar values of binary, LOB and text columns.
+ * Queries run by the methods of this class are reported to {@link QueryListeners}.
+ *
+ * @author ppolyakov at 18.10.2026 10:20
+ */
+public class QueryExecutor {
+
+    private final EntityManager entityManager;
+
+    public QueryExecutor( EntityManager entityManager ) {
+        if ( null == entityManager ) throw new IllegalArgumentException( "EntityManager may not be null." );
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Create query with all variables of the builder bound
+     * @param builder query builder
+     * @return query
+     */
+    public Query createQuery( HQLBuilder builder ) {
+        return bind( entityManager.createQuery( builder.build() ), builder.getVariables() );
+    }
+
+    /**
+     * Create typed query with all variables of the builder bound
+     * @param builder SELECT query builder
+     * @param resultType type of the result rows
+     * @param <T> type of the result rows
+     * @return query
+     */
+    public <T> TypedQuery<T> createQuery( HQLBuilder builder, Class<T> resultType ) {
+        return bind( entityManager.createQuery( builder.build(), resultType ), builder.getVariables() );
+    }
+
+    /**
+     * Create typed query from the HQL already built by the builder
+     * @param built HQL of the builder and its shape
+     * @param builder SELECT query builder
+     * @param resultType type of the result rows
+     * @param <T> type of the result rows
+     * @return query
+     */
+    <T> TypedQuery<T> createQuery( BuiltHql built, HQLBuilder builder, Class<T> resultType ) {
+        return bind( entityManager.createQuery( built.getHql(), resultType ), builder.getVariables() );
+    }
+
+    private Query createQuery( BuiltHql built, HQLBuilder builder ) {
+        return bind( entityManager.createQuery( built.getHql() ), builder.getVariables() );
+    }
+
+    /**
+     * Create typed query from a prepared query
+     * @param prepared prepared query
+     * @param resultType type of the result rows
+     * @param values values of the parameters of the prepared query, in order of declaration
+     * @param <T> type of the result rows
+     * @return query
+     */
+    public <T> TypedQuery<T> createQuery( PreparedHql prepared, Class<T> resultType, Object... values ) {
+        return bind( entityManager.createQuery( prepared.getHql(), resultType ), prepared.bind( values ) );
+    }
+
+    /**
+     * @param builder SELECT query builder
+     * @param resultType type of the result rows
+     * @param <T> type of the result rows
+     * @return all rows
+     */
+    public <T> List<T> list( HQLBuilder builder, Class<T> resultType ) {
+        BuiltHql built = builder.buildWithShape();
+        return measure( built, () -> createQuery( built, builder, resultType ).getResultList(), List::size );
+    }
+
+    /**
+     * @param builder SELECT query builder
+     * @param resultType type of the result rows
+     * @param firstResult position of the first row, starting with 0
+     * @param maxResults maximum number of rows
+     * @param <T> type of the result rows
+     * @return page of rows
+     */
+    public <T> List<T> list( HQLBuilder builder, Class<T> resultType, int firstResult, int maxResults ) {
+        BuiltHql built = builder.buildWithShape();
+        return measure( built, () -> createQuery( built, builder, resultType ).setFirstResult( firstResult ).setMaxResults( maxResults ).getResultList(), List::size );
+    }
+
+    /**
+     * @param builder SELECT query builder
+     * @param resultType type of the result rows
+     * @param <T> type of the result rows
+     * @return first row, if any
+     */
+    public <T> Optional<T> first( HQLBuilder builder, Class<T> resultType ) {
+        BuiltHql built = builder.buildWithShape();
+        List<T> result = measure( built, () -> createQuery( built, builder, resultType ).setMaxResults( 1 ).getResultList(), List::size );
+        return result.isEmpty() ? Optional.empty() : Optional.ofNullable( result.get( 0 ) );
+    }
+
+    /**
+     * Rows as a stream, see {@link TypedQuery#getResultStream()}. The stream must be closed
+     * @param builder SELECT query builder
+     * @param resultType type of the result rows
+     * @param <T> type of the result rows
+     * @return stream of rows
+     */
+    public <T> Stream<T> stream( HQLBuilder builder, Class<T> resultType ) {
+        BuiltHql built = builder.buildWithShape();
+        return measure( built, createQuery( built, builder, resultType ).getResultStream() );
+    }
+
+    /**
+     * Count rows of a SELECT query, see {@link HQLBuilder#toCountQuery()}
+     * @param builder SELECT query builder
+     * @return number of rows
+     */
+    public long count( HQLBuilder builder ) {
+        HQLBuilder count = builder.toCountQuery();
+        return count( count.buildWithShape(), count );
+    }
+
+    /**
+     * Run a count query already derived and built by the caller
+     * @param built HQL of the count query and its shape
+     * @param count count query builder, see {@link HQLBuilder#toCountQuery()}
+     * @return number of rows
+     */
+    long count( BuiltHql built, HQLBuilder count ) {
+        return measure( built, () -> createQuery( built, count, Long.class ).getSingleResult(), rows -> 1 );
+    }
+
+    /**
+     * Check that a SELECT query has rows, see {@link HQLBuilder#toExistsQuery()}
+     * @param builder SELECT query builder
+     * @return {@code true} if there is at least one row
+     */
+    public boolean exists( HQLBuilder builder ) {
+        HQLBuilder exists = builder.toExistsQuery();
+        BuiltHql built = exists.buildWithShape();
+        return !measure( built, () -> createQuery( built, exists ).setMaxResults( 1 ).getResultList(), List::size ).isEmpty();
+    }
+
+    /**
+     * Execute UPDATE or DELETE query
+     * @param builder query builder
+     * @return number of affected rows
+     */
+    public int executeUpdate( HQLBuilder builder ) {
+        BuiltHql built = builder.buildWithShape();
+        return measure( built, () -> createQuery( built, builder ).executeUpdate(), rows -> rows );
+    }
+
+    /**
+     * Run the query and report it to {@link QueryListeners}, if there are any
+     */
+    private static <R> R measure( BuiltHql built, Supplier<R> query, ToLongFunction<R> rows ) {
+        if ( !QueryListeners.isActive() ) return query.get();
+
+        long start = System.nanoTime();
+        R result;
+        try {
+            result = query.get();
+        } catch ( RuntimeException e ) {
+            fireExecute( built, -1, start, e );
+            throw e;
+        }
+        fireExecute( built, rows.applyAsLong( result ), start, null );
+        return result;
+    }
+
+    /**
+     * Report the stream to {@link QueryListeners} when it is closed, with the number of rows read
+     * @param built HQL the query was created from and its shape
+     * @param stream stream of rows
+     * @param <T> type of the result rows
+     * @return stream to return to the caller
+     */
+    static <T> Stream<T> measure( BuiltHql built, Stream<T> stream ) {
+        if ( !QueryListeners.isActive() ) return stream;
+
+        long start = System.nanoTime();
+        LongAdder rows = new LongAdder();
+        return stream.peek( row -> rows.increment() ).onClose( () -> fireExecute( built, rows.sum(), start, null ) );
+    }
+
+    private static void fireExecute( BuiltHql built, long rows, long start, Throwable error ) {
+        long nanos = System.nanoTime() - start;
+        QueryListeners.fireExecute( new ExecutionEvent( built.getShape(), built.getHql(), rows, nanos, error ) );
+    }
+
+    public EntityManager getEntityManager() {
+        return entityManager;
+    }
+
+    /**
+     * Bind variables to the query. Every variable must be declared by the query, the provider rejects unknown names
+     * @param query query
+     * @param variables variables by name, names of positional parameters are their positions
+     * @param <Q> type of query
+     * @return the same query
+     * @throws IllegalStateException if a variable is a {@link Parameter} placeholder without value
+     * @throws IllegalArgumentException if the query doesn't declare a variable
+     */
+    public static <Q extends Query> Q bind( Q query, Map<String, ?> variables ) {
+        for ( Map.Entry<String, ?> variable : variables.entrySet() ) {
+            String name = variable.getKey();
+            Object value = toBindable( name, variable.getValue() );
+            if ( isPosition( name ) ) {
+                query.setParameter( Integer.parseInt( name ), value );
+            } else {
+                query.setParameter( name, value );
+            }
+        }
+        return query;
+    }
+
+    private static Object toBindable( String name, Object value ) {
+        if ( value instanceof Parameter )
+            throw new IllegalStateException( "Parameter \"" + name + "\" has no value. Prepare the query and bind values with PreparedHql#bind." );
+        if ( value == null || !value.getClass().isArray() || isScalarArray( value.getClass() ) ) return value;
+        if ( value instanceof Object[] ) return Arrays.asList( ( Object[] ) value );
+
+        int length = Array.getLength( value );
+        List<Object> list = new ArrayList<>( length );
+        for ( int i = 0; i < length; i++ ) {
+            list.add( Array.get( value, i ) );
+        }
+        return list;
+    }
+
+    private static boolean isScalarArray( Class<?> type ) {
+        Class<?> component = type.getComponentType();
+        return component == byte.class || component == Byte.class || component == char.class || component == Character.class;
+    }
+
+    // parameter names are identifiers, so only positional parameters are named with digits
+    private static boolean isPosition( String name ) {
+        for ( int i = 0; i < name.length(); i++ ) {
+            if ( !Character.isDigit( name.charAt( i ) ) ) return false;
+        }
+        return !name.isEmpty();
+    }
+}
@@ -0,0 +1,184 @@
+package org.adaptms.hqlbuilder.jpa;
+
+import org.adaptms.hqlbuilder.builder.BuilderMode;
+import org.adaptms.hqlbuilder.builder.BuiltHql;
+import org.adaptms.hqlbuilder.builder.HQLBuilder;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads large results of SELECT builders with flat memory use.
+ * <p>
+ * Rows are fetched from the database in batches of {@link #getFetchSize()} and the persistence context is cleared
+ * every {@link #getClearInterval()} rows, so entities that were already processed can be collected.
+ * Rows are detached when the context is cleared: process each row (or chunk) before requesting the next one,
+ * and don't rely on lazy loading of rows that were handed out earlier.
+ * <p>
+ * Inside a transaction the context is flushed before it is cleared, so pending changes of the entity manager are
+ * written, including changes made to the rows. Rows are loaded as {@link #setReadOnly(boolean) read-only} by default,
+ * and then their changes are ignored. Outside a transaction nothing can be flushed: changes made to managed entities
+ * are lost when the context is cleared.
+ *
+ * @author ppolyakov at 18.10.2026 11:00
+ */
+public class StreamingExecutor {
+    public static final int DEFAULT_FETCH_SIZE = 500;
+    public static final int DEFAULT_CLEAR_INTERVAL = 1000;
+
+    // provider hints, ignored by providers that don't know them
+    static final String FETCH_SIZE_HINT = "org.hibernate.fetchSize";
+    static final String READ_ONLY_HINT = "org.hibernate.readOnly";
+
+    private final QueryExecutor executor;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    private int clearInterval = DEFAULT_CLEAR_INTERVAL;
+    private boolean readOnly = true;
+
+    public StreamingExecutor( EntityManager entityManager ) {
+        this.executor = new QueryExecutor( entityManager );
+    }
+
+    /**
+     * Stream rows of the query. The persistence context is flushed (inside a transaction) and cleared
+     * before every {@link #getClearInterval()}-th row is read. The stream must be closed
+     * @param builder SELECT query builder
+     * @param resultType type of the result rows
+     * @param <T> type of the result rows
+     * @return sequential stream of rows
+     */
+    public <T> Stream<T> stream( HQLBuilder builder, Class<T> resultType ) {
+        BuiltHql built = builder.buildWithShape();
+        Stream<T> rows = createQuery( built, builder, resultType ).getResultStream();
+        if ( clearInterval > 0 ) {
+            Spliterator<T> clearing = new ClearingSpliterator<>( rows.spliterator(), getEntityManager(), clearInterval );
+            rows = StreamSupport.stream( clearing, false ).onClose( rows::close );
+        }
+        return QueryExecutor.measure( built, rows );
+    }
+
+    /**
+     * Read rows of the query in chunks. The persistence context is flushed (inside a transaction) and cleared
+     * after every chunk is processed, so changes the callback makes to rows that are not read-only are written
+     * @param builder SELECT query builder
+     * @param resultType type of the result rows
+     * @param chunkSize number of rows in one chunk
+     * @param callback chunk consumer
+     * @param <T> type of the result rows
+     * @return total number of rows
+     */
+    public <T> long forEachChunk( HQLBuilder builder, Class<T> resultType, int chunkSize, Consumer<List<T>> callback ) {
+        if ( chunkSize <= 0 ) throw new IllegalArgumentException( "Chunk size must be positive, got: " + chunkSize );
+
+        long total = 0;
+        List<T> chunk = new ArrayList<>( chunkSize );
+        BuiltHql built = builder.buildWithShape();
+        try ( Stream<T> rows = QueryExecutor.measure( built, createQuery( built, builder, resultType ).getResultStream() ) ) {
+            Spliterator<T> spliterator = rows.spliterator();
+            while ( spliterator.tryAdvance( chunk::add ) ) {
+                if ( chunk.size() == chunkSize ) {
+                    total += flush( chunk, callback );
+                    chunk = new ArrayList<>( chunkSize );
+                }
+            }
+            if ( !chunk.isEmpty() ) total += flush( chunk, callback );
+        }
+        return total;
+    }
+
+    private <T> int flush( List<T> chunk, Consumer<List<T>> callback ) {
+        callback.accept( chunk );
+        flushAndClear( getEntityManager() );
+        return chunk.size();
+    }
+
+    private static void flushAndClear( EntityManager entityManager ) {
+        // flush needs a transaction, and without one there are no changes it could write
+        if ( entityManager.isJoinedToTransaction() ) entityManager.flush();
+        entityManager.clear();
+    }
+
+    private <T> TypedQuery<T> createQuery( BuiltHql built, HQLBuilder builder, Class<T> resultType ) {
+        if ( builder.getMode() != BuilderMode.SELECT )
+            throw new IllegalStateException( "Only SELECT queries may be streamed, got: " + builder.getMode().name() );
+
+        TypedQuery<T> query = executor.createQuery( built, builder, resultType );
+        query.setHint( FETCH_SIZE_HINT, fetchSize );
+        if ( readOnly ) query.setHint( READ_ONLY_HINT, true );
+        return query;
+    }
+
+    public EntityManager getEntityManager() {
+        return executor.getEntityManager();
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * @param fetchSize number of rows the JDBC driver reads in one round trip
+     */
+    public void setFetchSize( int fetchSize ) {
+        if ( fetchSize <= 0 ) throw new IllegalArgumentException( "Fetch size must be positive, got: " + fetchSize );
+        this.fetchSize = fetchSize;
+    }
+
+    public int getClearInterval() {
+        return clearInterval;
+    }
+
+    /**
+     * @param clearInterval number of rows after which {@link #stream(HQLBuilder, Class)} clears the persistence context,
+     *                      {@code 0} to never clear it
+     */
+    public void setClearInterval( int clearInterval ) {
+        if ( clearInterval < 0 ) throw new IllegalArgumentException( "Clear interval may not be negative." );
+        this.clearInterval = clearInterval;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * @param readOnly load entities as read-only, without snapshots for dirty checking; changes made to them are
+     *                 not written. Enabled by default
+     */
+    public void setReadOnly( boolean readOnly ) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Flushes and clears the persistence context before handing out every {@code interval}-th row,
+     * i.e. after the previous rows were consumed
+     */
+    private static final class ClearingSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+        private final Spliterator<T> rows;
+        private final EntityManager entityManager;
+        private final int interval;
+        private long count;
+
+        private ClearingSpliterator( Spliterator<T> rows, EntityManager entityManager, int interval ) {
+            super( Long.MAX_VALUE, Spliterator.ORDERED );
+            this.rows = rows;
+            this.entityManager = entityManager;
+            this.interval = interval;
+        }
+
+        @Override
+        public boolean tryAdvance( Consumer<? super T> action ) {
+            if ( count > 0 && count % interval == 0 ) flushAndClear( entityManager );
+            boolean advanced = rows.tryAdvance( action );
+            if ( advanced ) count++;
+            return advanced;
+        }
+    }
+}
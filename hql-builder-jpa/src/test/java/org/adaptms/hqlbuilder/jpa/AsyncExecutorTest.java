@@ -0,0 +1,145 @@
+package org.adaptms.hqlbuilder.jpa;
+
+import org.adaptms.hqlbuilder.builder.HQLBuilder;
+import org.adaptms.hqlbuilder.builder.QueryShape;
+import org.adaptms.hqlbuilder.expression.Expressions;
+import org.adaptms.hqlbuilder.metrics.QueryListeners;
+import org.adaptms.hqlbuilder.metrics.QueryStatistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+class AsyncExecutorTest {
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.reset( 30 );
+    }
+
+    @Test
+    void pageAndCount() throws Exception {
+        HQLBuilder builder = HQLBuilder.select( Person.class, "p" )
+                .where( Expressions.eq( Person.alias( "p" ).city().name(), "London" ) )
+                .orderBy( Person.alias( "p" ).age() );
+
+        AsyncExecutor executor = new AsyncExecutor( TestDatabase.factory() );
+        try {
+            Page<Person> page = executor.page( builder, Person.class, 10, 10 ).get( 10, TimeUnit.SECONDS );
+
+            assert page.getTotal() == 15;
+            assert page.getContent().size() == 5;
+            assert page.getContent().get( 0 ).getAge() == 20;
+            assert executor.exists( builder ).get( 10, TimeUnit.SECONDS );
+        } finally {
+            executor.close();
+        }
+        assert ( ( ExecutorService ) executor.getExecutor() ).isShutdown();
+    }
+
+    @Test
+    void pageCountIsReported() throws Exception {
+        HQLBuilder builder = HQLBuilder.select( Person.class, "p" ).where( Expressions.gt( Person.alias( "p" ).age(), 24 ) );
+        QueryStatistics statistics = new QueryStatistics();
+        QueryListeners.add( statistics );
+        try ( AsyncExecutor executor = new AsyncExecutor( TestDatabase.factory() ) ) {
+            assert executor.page( builder, Person.class, 0, 2 ).get( 10, TimeUnit.SECONDS ).getTotal() == 5;
+        } finally {
+            QueryListeners.remove( statistics );
+        }
+
+        assert statistics.get( QueryShape.of( builder ) ).getExecutions() == 1;
+        assert statistics.get( QueryShape.of( builder.toCountQuery() ) ).getExecutions() == 1;
+    }
+
+    @Test
+    void submitAfterCloseFails() throws Exception {
+        AsyncExecutor executor = new AsyncExecutor( TestDatabase.factory() );
+        executor.close();
+
+        CompletableFuture<Long> count = executor.count( HQLBuilder.select( Person.class, "p" ) );
+        assert count.isCompletedExceptionally();
+        try {
+            count.get( 10, TimeUnit.SECONDS );
+            assert false : "Closed executor must not accept queries";
+        } catch ( ExecutionException e ) {
+            assert e.getCause() instanceof RejectedExecutionException;
+        }
+
+        ThreadPoolExecutor pool = AsyncExecutor.createPool( 1, 1 );
+        pool.shutdown();
+        try {
+            pool.execute( () -> { } );
+            assert false : "Shut down pool must not drop tasks silently";
+        } catch ( RejectedExecutionException expected ) {
+            // expected
+        }
+    }
+
+    @Test
+    void fullPoolRunsOnCaller() throws Exception {
+        ThreadPoolExecutor pool = AsyncExecutor.createPool( 1, 1 );
+        try ( AsyncExecutor executor = new AsyncExecutor( TestDatabase.factory(), pool ) ) {
+            CountDownLatch release = new CountDownLatch( 1 );
+            CompletableFuture<Long> busy = executor.submit( queries -> {
+                await( release );
+                return queries.count( HQLBuilder.select( Person.class, "p" ) );
+            } );
+            CompletableFuture<Long> queued = executor.count( HQLBuilder.select( City.class, "c" ) );
+
+            // the thread and the queue are taken, so the next query runs right away on this thread
+            Thread caller = Thread.currentThread();
+            CompletableFuture<Thread> overflow = executor.submit( queries -> Thread.currentThread() );
+            assert overflow.isDone() && overflow.get() == caller;
+            assert pool.getQueue().size() == 1;
+
+            release.countDown();
+            assert busy.get( 10, TimeUnit.SECONDS ) == 30;
+            assert queued.get( 10, TimeUnit.SECONDS ) == 2;
+        }
+        assert !pool.isShutdown() : "Executors given by the caller are not shut down";
+        pool.shutdown();
+    }
+
+    @Test
+    void queriesRunConcurrently() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool( 2 );
+        try {
+            AsyncExecutor executor = new AsyncExecutor( TestDatabase.factory(), pool );
+            CountDownLatch bothStarted = new CountDownLatch( 2 );
+
+            // each task waits for the other one, so they only complete if they run at the same time
+            CompletableFuture<Long> first = executor.submit( queries -> {
+                bothStarted.countDown();
+                await( bothStarted );
+                return queries.count( HQLBuilder.select( Person.class, "p" ) );
+            } );
+            CompletableFuture<Long> second = executor.submit( queries -> {
+                bothStarted.countDown();
+                await( bothStarted );
+                return queries.count( HQLBuilder.select( City.class, "c" ) );
+            } );
+
+            assert first.get( 10, TimeUnit.SECONDS ) == 30;
+            assert second.get( 10, TimeUnit.SECONDS ) == 2;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void await( CountDownLatch latch ) {
+        try {
+            if ( !latch.await( 5, TimeUnit.SECONDS ) ) throw new IllegalStateException( "Tasks didn't run concurrently." );
+        } catch ( InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( ie );
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.adaptms.hqlbuilder.jpa;
+
+import org.adaptms.hqlbuilder.builder.HQLBuilder;
+import org.adaptms.hqlbuilder.expression.Expressions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class BulkExecutorTest {
+
+    private BulkExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.reset( 250 );
+        executor = new BulkExecutor( TestDatabase.factory() );
+    }
+
+    @Test
+    void updateInChunks() {
+        HQLBuilder update = HQLBuilder.update( Person.class )
+                .set( Person.root().age(), 1000 )
+                .where( Expressions.ge( Person.root().age(), 10 ) );
+        String hql = update.build();
+
+        executor.setChunkSize( 100 );
+        List<Integer> chunks = new ArrayList<>();
+        BulkProgress progress = executor.execute( update, chunk -> chunks.add( chunk.getChunkRows() ) );
+
+        assert progress.getTotalRows() == 240 && progress.getChunks() == 3;
+        assert chunks.equals( Arrays.asList( 100, 100, 40 ) );
+        assert update.build().equals( hql );
+        assert count( HQLBuilder.select( Person.class, "p" ).where( Expressions.eq( Person.alias( "p" ).age(), 1000 ) ) ) == 240;
+    }
+
+    @Test
+    void deleteInChunks() {
+        HQLBuilder delete = HQLBuilder.delete( Person.class ).where( Expressions.lt( Person.root().age(), 10 ) );
+
+        executor.setChunkSize( 4 );
+        BulkProgress progress = executor.execute( delete );
+
+        assert progress.getTotalRows() == 10 && progress.getChunks() == 3;
+        assert count( HQLBuilder.select( Person.class, "p" ) ) == 240;
+        assert executor.execute( delete ).getTotalRows() == 0;
+    }
+
+    @Test
+    void resumeAfterLastCommittedChunk() {
+        HQLBuilder update = HQLBuilder.update( Person.class )
+                .set( Person.root().age(), 1000 )
+                .where( Expressions.ge( Person.root().age(), 10 ) );
+        executor.setChunkSize( 100 );
+
+        List<BulkProgress> committed = new ArrayList<>();
+        try {
+            executor.execute( update, chunk -> {
+                committed.add( chunk );
+                throw new IllegalStateException( "Stopped after the first chunk." );
+            } );
+            assert false : "Listener failure must stop the execution";
+        } catch ( IllegalStateException expected ) {
+            // expected
+        }
+        assert committed.size() == 1;
+
+        BulkProgress progress = executor.execute( update, committed.get( 0 ).getLastId(), chunk -> { } );
+        assert progress.getTotalRows() == 140 && progress.getChunks() == 2;
+        assert count( HQLBuilder.select( Person.class, "p" ).where( Expressions.eq( Person.alias( "p" ).age(), 1000 ) ) ) == 240;
+    }
+
+    private static long count( HQLBuilder select ) {
+        EntityManager entityManager = TestDatabase.factory().createEntityManager();
+        try {
+            return new QueryExecutor( entityManager ).count( select );
+        } finally {
+            entityManager.close();
+        }
+    }
+}
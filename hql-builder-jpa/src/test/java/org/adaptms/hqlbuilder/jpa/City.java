@@ -0,0 +1,44 @@
+package org.adaptms.hqlbuilder.jpa;
+
+import org.adaptms.hqlbuilder.property.EntityPath;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+
+/**
+ * @author ppolyakov at 18.10.2026 10:20
+ */
+@Entity
+public class City {
+
+    public static DSL root() { return new DSL( null ); }
+
+    public static DSL alias( String alias ) { return new DSL( alias ); }
+
+    public static class DSL extends EntityPath {
+        private DSL( String previousPath ) { super( previousPath ); }
+        public EntityPath id() { return addToPrevious( "id" ); }
+        public EntityPath name() { return addToPrevious( "name" ); }
+    }
+
+    @Id
+    @GeneratedValue
+    private Long id;
+    private String name;
+
+    public City() {
+    }
+
+    public City( String name ) {
+        this.name = name;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
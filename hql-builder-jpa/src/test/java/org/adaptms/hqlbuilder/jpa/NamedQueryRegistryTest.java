@@ -0,0 +1,82 @@
+package org.adaptms.hqlbuilder.jpa;
+
+import org.adaptms.hqlbuilder.builder.HQLBuilder;
+import org.adaptms.hqlbuilder.expression.Expressions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import java.io.StringWriter;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class NamedQueryRegistryTest {
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.reset( 10 );
+    }
+
+    @Test
+    void warmUpAndNamedQueries() throws Exception {
+        NamedQueryRegistry registry = new NamedQueryRegistry();
+        registry.register( "Person.byCity", HQLBuilder.select( Person.class, "p" )
+                .where( Expressions.eq( Person.alias( "p" ).city().name(), Expressions.param( "city" ) ) ) );
+        registry.register( "Person.olderThan", HQLBuilder.select( Person.class, "p" )
+                .where( Expressions.gt( Person.alias( "p" ).age(), Expressions.param( "age" ) ) ) );
+
+        assert registry.warmUp( TestDatabase.factory() ).get( 10, TimeUnit.SECONDS ) == 2;
+        assert warmUpThreadEnds();
+        registry.addNamedQueries( TestDatabase.factory() );
+
+        EntityManager entityManager = TestDatabase.factory().createEntityManager();
+        try {
+            assert registry.createQuery( entityManager, "Person.byCity", Person.class, "Paris" ).getResultList().size() == 5;
+            assert entityManager.createNamedQuery( "Person.olderThan", Person.class ).setParameter( "age", 7 ).getResultList().size() == 2;
+        } finally {
+            entityManager.close();
+        }
+
+        StringWriter xml = new StringWriter();
+        registry.writeOrmXml( xml );
+        assert xml.toString().contains( "<named-query name=\"Person.byCity\">" );
+        assert xml.toString().contains( "<query><![CDATA[" + registry.get( "Person.byCity" ).getHql() + "]]></query>" );
+    }
+
+    private static boolean warmUpThreadEnds() throws InterruptedException {
+        for ( int i = 0; i < 100; i++ ) {
+            if ( Thread.getAllStackTraces().keySet().stream().noneMatch( thread -> thread.getName().equals( NamedQueryRegistry.WARM_UP_THREAD ) ) ) return true;
+            Thread.sleep( 50 );
+        }
+        return false;
+    }
+
+    @Test
+    void invalidQueries() throws Exception {
+        NamedQueryRegistry registry = new NamedQueryRegistry();
+        registry.register( "Person.adults", HQLBuilder.select( Person.class, "p" ).where( Expressions.ge( Person.alias( "p" ).age(), 18 ) ) );
+
+        try {
+            registry.register( "Person.adults", HQLBuilder.select( Person.class, "p" ) );
+            assert false;
+        } catch ( IllegalStateException ise ) {
+            assert ise.getMessage().contains( "already registered" );
+        }
+
+        // the value bound in the builder can't be exported, but the query can still be run from the registry
+        try {
+            registry.writeOrmXml( new StringWriter() );
+            assert false;
+        } catch ( IllegalStateException ise ) {
+            assert ise.getMessage().contains( "Person.adults" );
+        }
+
+        registry.register( "Person.broken", HQLBuilder.select( Person.class, "p" ).where( Expressions.isNull( Person.alias( "p" ).city().id() ) ).column( "nonsense(" ) );
+        try {
+            registry.warmUp( TestDatabase.factory() ).get( 10, TimeUnit.SECONDS );
+            assert false;
+        } catch ( ExecutionException ee ) {
+            assert ee.getCause().getMessage().contains( "Person.broken" );
+        }
+    }
+}
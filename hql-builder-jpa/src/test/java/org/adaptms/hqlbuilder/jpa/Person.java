@@ -0,0 +1,64 @@
+package org.adaptms.hqlbuilder.jpa;
+
+import org.adaptms.hqlbuilder.property.EntityPath;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+
+/**
+ * @author ppolyakov at 18.10.2026 10:20
+ */
+@Entity
+public class Person {
+
+    public static DSL root() { return new DSL( null ); }
+
+    public static DSL alias( String alias ) { return new DSL( alias ); }
+
+    public static class DSL extends EntityPath {
+        private DSL( String previousPath ) { super( previousPath ); }
+        public EntityPath id() { return addToPrevious( "id" ); }
+        public EntityPath name() { return addToPrevious( "name" ); }
+        public EntityPath age() { return addToPrevious( "age" ); }
+        public City.DSL city() { return City.alias( step( "city" ) ); }
+    }
+
+    @Id
+    @GeneratedValue
+    private Long id;
+    private String name;
+    private int age;
+    @ManyToOne
+    private City city;
+
+    public Person() {
+    }
+
+    public Person( String name, int age, City city ) {
+        this.name = name;
+        this.age = age;
+        this.city = city;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public void setAge( int age ) {
+        this.age = age;
+    }
+
+    public City getCity() {
+        return city;
+    }
+}
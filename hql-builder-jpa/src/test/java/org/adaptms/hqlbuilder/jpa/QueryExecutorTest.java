@@ -0,0 +1,200 @@
+package org.adaptms.hqlbuilder.jpa;
+
+import org.adaptms.hqlbuilder.builder.HQLBuilder;
+import org.adaptms.hqlbuilder.builder.ParameterNaming;
+import org.adaptms.hqlbuilder.builder.PreparedHql;
+import org.adaptms.hqlbuilder.builder.QueryCache;
+import org.adaptms.hqlbuilder.builder.QueryShape;
+import org.adaptms.hqlbuilder.expression.Expressions;
+import org.adaptms.hqlbuilder.expression.join.JoinType;
+import org.adaptms.hqlbuilder.expression.order.QueryOrderDirection;
+import org.adaptms.hqlbuilder.metrics.ExecutionEvent;
+import org.adaptms.hqlbuilder.metrics.QueryListener;
+import org.adaptms.hqlbuilder.metrics.QueryListeners;
+import org.adaptms.hqlbuilder.metrics.QueryStatistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class QueryExecutorTest {
+
+    private EntityManager entityManager;
+    private QueryExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.reset( 10 );
+        entityManager = TestDatabase.factory().createEntityManager();
+        executor = new QueryExecutor( entityManager );
+    }
+
+    @AfterEach
+    void tearDown() {
+        entityManager.close();
+    }
+
+    @Test
+    void listAndPage() {
+        HQLBuilder builder = HQLBuilder.select( Person.class, "p" )
+                .join( JoinType.INNER, City.class, "c", Expressions.eq( City.alias( "c" ).id(), Person.alias( "p" ).city().id() ) )
+                .where( Expressions.eq( City.alias( "c" ).name(), "London" ) )
+                .where( Expressions.in( Person.alias( "p" ).age(), new int[] { 0, 2, 3, 4, 8 } ) )
+                .orderBy( Person.alias( "p" ).age(), QueryOrderDirection.DESC );
+
+        List<Person> all = executor.list( builder, Person.class );
+        assert all.stream().map( Person::getAge ).collect( Collectors.toList() ).equals( Arrays.asList( 8, 4, 2, 0 ) );
+
+        List<Person> page = executor.list( builder, Person.class, 1, 2 );
+        assert page.stream().map( Person::getAge ).collect( Collectors.toList() ).equals( Arrays.asList( 4, 2 ) );
+
+        assert executor.count( builder ) == 4;
+        assert executor.exists( builder );
+        assert executor.first( builder, Person.class ).get().getAge() == 8;
+    }
+
+    @Test
+    void fetchJoin() {
+        HQLBuilder builder = HQLBuilder.select( Person.class, "p" )
+                .joinFetch( JoinType.INNER, Person.alias( "p" ).city(), "c" )
+                .where( Expressions.eq( City.alias( "c" ).name(), "Paris" ) )
+                .orderBy( Person.alias( "p" ).age() );
+        builder.setPathValidation( true );
+
+        List<Person> persons = executor.list( builder, Person.class, 0, 3 );
+        assert persons.stream().map( Person::getAge ).collect( Collectors.toList() ).equals( Arrays.asList( 1, 3, 5 ) );
+        assert persons.stream().allMatch( person -> entityManager.getEntityManagerFactory().getPersistenceUnitUtil().isLoaded( person, "city" ) );
+
+        assert executor.count( builder ) == 5;
+        assert executor.exists( builder );
+    }
+
+    @Test
+    void streamAndUpdate() {
+        HQLBuilder update = HQLBuilder.update( Person.class )
+                .set( Person.root().age(), 100 )
+                .where( Expressions.gt( Person.root().age(), 6 ) );
+
+        entityManager.getTransaction().begin();
+        assert executor.executeUpdate( update ) == 3;
+        entityManager.getTransaction().commit();
+
+        HQLBuilder select = HQLBuilder.select( Person.class, "p" ).column( Person.alias( "p" ).age() )
+                .where( Expressions.eq( Person.alias( "p" ).age(), 100 ) );
+        try ( Stream<Integer> ages = executor.stream( select, Integer.class ) ) {
+            assert ages.count() == 3;
+        }
+    }
+
+    @Test
+    void positionalAndPreparedQueries() {
+        HQLBuilder positional = HQLBuilder.select( Person.class, "p" );
+        positional.setParameterNaming( ParameterNaming.POSITIONAL );
+        positional.where( Expressions.gt( Person.alias( "p" ).age(), 3 ) ).where( Expressions.lt( Person.alias( "p" ).age(), 6 ) );
+        assert executor.count( positional ) == 2;
+
+        PreparedHql prepared = HQLBuilder.select( Person.class, "p" )
+                .where( Expressions.eq( Person.alias( "p" ).city().name(), Expressions.param( "city" ) ) )
+                .prepare();
+        assert executor.createQuery( prepared, Person.class, "Paris" ).getResultList().size() == 5;
+
+        try {
+            executor.createQuery( HQLBuilder.select( Person.class, "p" ).where( Expressions.eq( Person.alias( "p" ).name(), Expressions.param( "name" ) ) ) );
+            assert false;
+        } catch ( IllegalStateException ise ) {
+            assert ise.getMessage().contains( "\"name\" has no value" );
+        }
+    }
+
+    @Test
+    void undeclaredVariablesAreRejected() {
+        HQLBuilder builder = HQLBuilder.select( Person.class, "p" ).where( Expressions.gt( Person.alias( "p" ).age(), 4 ) );
+        Map<String, Object> variables = new HashMap<>( builder.getVariables() );
+        variables.put( "leftover", 1 );
+        builder.setVariables( variables );
+        try {
+            executor.createQuery( builder, Person.class );
+            assert false : "Unknown variable must not be skipped";
+        } catch ( IllegalArgumentException expected ) {
+            // expected
+        }
+    }
+
+    @Test
+    void binaryArraysAreBoundAsValues() {
+        Map<Object, Object> bound = new HashMap<>();
+        Query query = ( Query ) Proxy.newProxyInstance( Query.class.getClassLoader(), new Class<?>[] { Query.class }, ( proxy, method, args ) -> {
+            if ( method.getName().equals( "setParameter" ) ) bound.put( args[0], args[1] );
+            return proxy;
+        } );
+
+        byte[] bytes = { 1, 2 };
+        char[] chars = { 'a', 'b' };
+        Map<String, Object> variables = new HashMap<>();
+        variables.put( "bytes", bytes );
+        variables.put( "boxedBytes", new Byte[] { 1, 2 } );
+        variables.put( "chars", chars );
+        variables.put( "boxedChars", new Character[] { 'a' } );
+        variables.put( "ints", new int[] { 1, 2 } );
+        variables.put( "strings", new String[] { "a", "b" } );
+        QueryExecutor.bind( query, variables );
+
+        assert bound.get( "bytes" ) == bytes && bound.get( "chars" ) == chars;
+        assert bound.get( "boxedBytes" ) instanceof Byte[] && bound.get( "boxedChars" ) instanceof Character[];
+        assert bound.get( "ints" ).equals( Arrays.asList( 1, 2 ) ) && bound.get( "strings" ).equals( Arrays.asList( "a", "b" ) );
+    }
+
+    @Test
+    void executionStatistics() {
+        HQLBuilder builder = HQLBuilder.select( Person.class, "p" ).where( Expressions.gt( Person.alias( "p" ).age(), 4 ) );
+        QueryStatistics statistics = new QueryStatistics();
+        QueryListeners.add( statistics );
+        try {
+            executor.list( builder, Person.class );
+            try ( Stream<Person> persons = executor.stream( builder, Person.class ) ) {
+                persons.forEach( person -> { } );
+            }
+        } finally {
+            QueryListeners.remove( statistics );
+        }
+
+        QueryStatistics.ShapeStatistics shape = statistics.get( QueryShape.of( builder ) );
+        assert shape.getExecutions() == 2 && shape.getRows() == 10 && shape.getErrors() == 0;
+        assert shape.getExecutionTime().getCount() == 2;
+    }
+
+    @Test
+    void executionEventsWithoutCache() {
+        HQLBuilder builder = HQLBuilder.select( Person.class, "p" ).where( Expressions.gt( Person.alias( "p" ).age(), 4 ) );
+        List<ExecutionEvent> events = new ArrayList<>();
+        QueryListener listener = new QueryListener() {
+            @Override
+            public void onExecute( ExecutionEvent event ) {
+                events.add( event );
+            }
+        };
+        QueryCache.setEnabled( false );
+        QueryListeners.add( listener );
+        try {
+            executor.list( builder, Person.class );
+            executor.count( builder );
+        } finally {
+            QueryListeners.remove( listener );
+            QueryCache.setEnabled( true );
+        }
+
+        assert events.size() == 2;
+        assert events.get( 0 ).getHql().equals( builder.build() ) && events.get( 0 ).getShape().equals( QueryShape.of( builder ) );
+        assert events.get( 1 ).getHql().equals( builder.toCountQuery().build() );
+    }
+}
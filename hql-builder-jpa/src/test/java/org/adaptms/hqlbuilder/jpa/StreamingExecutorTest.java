@@ -0,0 +1,92 @@
+package org.adaptms.hqlbuilder.jpa;
+
+import org.adaptms.hqlbuilder.builder.HQLBuilder;
+import org.adaptms.hqlbuilder.expression.Expressions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+class StreamingExecutorTest {
+
+    private EntityManager entityManager;
+    private StreamingExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.reset( 250 );
+        entityManager = TestDatabase.factory().createEntityManager();
+        executor = new StreamingExecutor( entityManager );
+        executor.setFetchSize( 50 );
+        executor.setClearInterval( 100 );
+    }
+
+    @AfterEach
+    void tearDown() {
+        entityManager.close();
+    }
+
+    @Test
+    void streamClearsPersistenceContext() {
+        HQLBuilder builder = HQLBuilder.select( Person.class, "p" ).orderBy( Person.alias( "p" ).age() );
+
+        try ( Stream<Person> rows = executor.stream( builder, Person.class ) ) {
+            Iterator<Person> iterator = rows.iterator();
+            Person first = iterator.next();
+            assert entityManager.contains( first );
+
+            int count = 1;
+            Person last = first;
+            while ( iterator.hasNext() ) {
+                last = iterator.next();
+                assert last.getAge() == count++;
+            }
+            assert count == 250;
+            assert !entityManager.contains( first );
+            assert entityManager.contains( last );
+        }
+    }
+
+    @Test
+    void chunksAreClearedAfterProcessing() {
+        HQLBuilder builder = HQLBuilder.select( Person.class, "p" ).orderBy( Person.alias( "p" ).age() );
+
+        List<Integer> sizes = new ArrayList<>();
+        List<Person> previous = new ArrayList<>();
+        long total = executor.forEachChunk( builder, Person.class, 100, chunk -> {
+            for ( Person person : previous ) assert !entityManager.contains( person );
+            for ( Person person : chunk ) assert entityManager.contains( person );
+            sizes.add( chunk.size() );
+            previous.clear();
+            previous.addAll( chunk );
+        } );
+
+        assert total == 250;
+        assert sizes.equals( Arrays.asList( 100, 100, 50 ) );
+    }
+
+    @Test
+    void changesAreFlushedBeforeClear() {
+        HQLBuilder builder = HQLBuilder.select( Person.class, "p" ).orderBy( Person.alias( "p" ).age() );
+        executor.setReadOnly( false );
+
+        entityManager.getTransaction().begin();
+        entityManager.persist( new Person( "pending", 1000, null ) );
+        executor.forEachChunk( builder, Person.class, 100, chunk -> chunk.forEach( person -> person.setAge( person.getAge() + 1000 ) ) );
+        try ( Stream<Person> rows = executor.stream( builder, Person.class ) ) {
+            rows.forEach( person -> person.setAge( person.getAge() + 1000 ) );
+        }
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+
+        HQLBuilder old = HQLBuilder.select( Person.class, "p" ).where( Expressions.lt( Person.alias( "p" ).age(), 2000 ) );
+        assert new QueryExecutor( entityManager ).count( old ) == 0;
+        assert new QueryExecutor( entityManager ).count( HQLBuilder.select( Person.class, "p" ) ) == 251;
+    }
+}
@@ -0,0 +1,54 @@
+package org.adaptms.hqlbuilder.jpa;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.function.Consumer;
+
+/**
+ * In-memory H2 database shared by the tests
+ *
+ * @author ppolyakov at 18.10.2026 10:20
+ */
+final class TestDatabase {
+
+    private static final EntityManagerFactory FACTORY = Persistence.createEntityManagerFactory( "test" );
+
+    private TestDatabase() {
+    }
+
+    static EntityManagerFactory factory() {
+        return FACTORY;
+    }
+
+    static void inTransaction( Consumer<EntityManager> work ) {
+        EntityManager entityManager = FACTORY.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            work.accept( entityManager );
+            entityManager.getTransaction().commit();
+        } finally {
+            if ( entityManager.getTransaction().isActive() ) entityManager.getTransaction().rollback();
+            entityManager.close();
+        }
+    }
+
+    /**
+     * Replace all data with {@code count} persons aged 0 to {@code count - 1}, living in two cities
+     * @param count number of persons
+     */
+    static void reset( int count ) {
+        inTransaction( entityManager -> {
+            entityManager.createQuery( "delete from Person" ).executeUpdate();
+            entityManager.createQuery( "delete from City" ).executeUpdate();
+
+            City london = new City( "London" );
+            City paris = new City( "Paris" );
+            entityManager.persist( london );
+            entityManager.persist( paris );
+            for ( int i = 0; i < count; i++ ) {
+                entityManager.persist( new Person( "person" + i, i, i % 2 == 0 ? london : paris ) );
+            }
+        } );
+    }
+}
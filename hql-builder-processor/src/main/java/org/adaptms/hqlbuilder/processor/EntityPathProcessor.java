@@ -0,0 +1,420 @@
+package org.adaptms.hqlbuilder.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates an {@code EntityPath} class for every {@code @Entity} and {@code @Embeddable} class:
+ * {@code MyEntity} gets {@code MyEntityPath} in the same package, nested classes are prefixed with their outer
+ * classes ({@code Outer_MyEntityPath}).
+ * <p>
+ * Generated classes are the same DSL you would write by hand, but every path object is created once:
+ * {@code root()} and {@code alias( String )} return cached instances, properties are final fields
+ * and associations are created on first access and kept, so navigating a path allocates nothing.
+ * Association fields are volatile: path objects are shared between threads, and associations can't be created
+ * eagerly because entities may reference each other.
+ * Property names are also exposed as {@code String} constants; properties whose constant names collide are reported
+ * as errors.
+ * <p>
+ * Properties are found like {@code EntityMetadata} of the core module does: fields with field access, getters with
+ * property access, the access type taken from {@code @Access} or from the placement of {@code @Id}.
+ *
+ * @author ppolyakov at 17.10.2026 23:40
+ */
+public class EntityPathProcessor extends AbstractProcessor {
+
+    static final String SUFFIX = "Path";
+
+    private static final String ENTITY_PATH = "org.adaptms.hqlbuilder.property.EntityPath";
+    private static final Set<String> ENTITY = annotations( "Entity" );
+    private static final Set<String> EMBEDDABLE = annotations( "Embeddable" );
+    private static final Set<String> MAPPED_SUPERCLASS = annotations( "MappedSuperclass" );
+    private static final Set<String> TRANSIENT = annotations( "Transient" );
+    private static final Set<String> ACCESS = annotations( "Access" );
+    private static final Set<String> ID = annotations( "Id" );
+    private static final Set<String> EMBEDDED_ID = annotations( "EmbeddedId" );
+
+    // members of generated class and EntityPath which can't be property accessors
+    private static final Set<String> RESERVED = new HashSet<>( Arrays.asList(
+            "root", "alias", "of", "getPath", "toString", "hashCode", "getClass", "notify", "notifyAll", "wait", "clone", "finalize" ) );
+
+    private final Set<String> generated = new HashSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        Set<String> types = new LinkedHashSet<>( ENTITY );
+        types.addAll( EMBEDDABLE );
+        return types;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process( Set<? extends TypeElement> annotations, RoundEnvironment roundEnv ) {
+        for ( TypeElement annotation : annotations ) {
+            for ( TypeElement type : ElementFilter.typesIn( roundEnv.getElementsAnnotatedWith( annotation ) ) ) {
+                if ( isSupported( type.getKind() ) && generated.add( type.getQualifiedName().toString() ) ) generate( type );
+            }
+        }
+        return false;
+    }
+
+    private void generate( TypeElement type ) {
+        String packageName = packageOf( type );
+        String className = pathClassName( type );
+        String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+
+        List<Property> properties = properties( type );
+        if ( !checkConstantNames( type, properties ) ) return;
+
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile( qualifiedName, type );
+            try ( Writer writer = file.openWriter() ) {
+                writer.write( source( type, properties, packageName, className ) );
+            }
+        } catch ( IOException ioe ) {
+            processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR, "Can't generate " + qualifiedName + ": " + ioe.getMessage(), type );
+        }
+    }
+
+    /**
+     * Report properties that would get the same constant name, e.g. {@code fooBar} and {@code foo_bar}
+     * @return {@code true} if all constant names are unique
+     */
+    private boolean checkConstantNames( TypeElement type, List<Property> properties ) {
+        Map<String, Property> constants = new HashMap<>();
+        boolean unique = true;
+        for ( Property property : properties ) {
+            Property previous = constants.putIfAbsent( constantName( property.name ), property );
+            if ( previous == null ) continue;
+            processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR, "Properties \"" + previous.name + "\" and \"" + property.name
+                    + "\" of " + type.getQualifiedName() + " have the same constant name " + constantName( property.name ) + ".", property.element );
+            unique = false;
+        }
+        return unique;
+    }
+
+    /**
+     * Names of the generated fields: property names, unless a property name is also a constant name, e.g. {@code URL}
+     * @return field name by property
+     */
+    private static Map<Property, String> fieldNames( List<Property> properties ) {
+        Set<String> taken = new HashSet<>();
+        for ( Property property : properties ) {
+            taken.add( constantName( property.name ) );
+        }
+        Map<Property, String> fields = new HashMap<>();
+        for ( Property property : properties ) {
+            String field = property.name;
+            while ( !taken.add( field ) ) field += "_";
+            fields.put( property, field );
+        }
+        return fields;
+    }
+
+    private String source( TypeElement type, List<Property> properties, String packageName, String className ) {
+        Map<Property, String> fields = fieldNames( properties );
+
+        StringBuilder source = new StringBuilder( 2048 );
+        if ( !packageName.isEmpty() ) source.append( "package " ).append( packageName ).append( ";\n\n" );
+
+        source.append( "/**\n" )
+                .append( " * Paths of {@link " ).append( type.getQualifiedName() ).append( "}.\n" )
+                .append( " * Generated by " ).append( getClass().getName() ).append( ", do not edit.\n" )
+                .append( " */\n" )
+                .append( "public final class " ).append( className ).append( " extends " ).append( ENTITY_PATH ).append( " {\n\n" );
+
+        // property names
+        for ( Property property : properties ) {
+            source.append( "    public static final String " ).append( constantName( property.name ) )
+                    .append( " = \"" ).append( property.name ).append( "\";\n" );
+        }
+
+        source.append( "\n" )
+                .append( "    private static final int $MAX_ALIASES = 256;\n" )
+                .append( "    private static final " ).append( className ).append( " $ROOT = new " ).append( className ).append( "( null );\n" )
+                .append( "    private static final java.util.concurrent.ConcurrentMap<String, " ).append( className ).append( "> $ALIASES = new java.util.concurrent.ConcurrentHashMap<>();\n\n" );
+
+        for ( Property property : properties ) {
+            String target = associationPathClass( property );
+            source.append( "    private " )
+                    .append( target == null ? "final " + ENTITY_PATH : "volatile " + target )
+                    .append( ' ' ).append( fields.get( property ) ).append( ";\n" );
+        }
+
+        // constructor: simple properties are created with the path, associations on first access
+        source.append( "\n    private " ).append( className ).append( "( String path ) {\n" )
+                .append( "        super( path );\n" );
+        for ( Property property : properties ) {
+            if ( associationPathClass( property ) != null ) continue;
+            source.append( "        this." ).append( fields.get( property ) ).append( " = new " ).append( ENTITY_PATH )
+                    .append( "( step( " ).append( constantName( property.name ) ).append( " ) );\n" );
+        }
+        source.append( "    }\n\n" );
+
+        source.append( "    /**\n     * @return path without alias, for UPDATE and DELETE queries\n     */\n" )
+                .append( "    public static " ).append( className ).append( " root() {\n" )
+                .append( "        return $ROOT;\n" )
+                .append( "    }\n\n" );
+
+        source.append( "    /**\n     * @param alias alias of the entity in the query\n     * @return path starting with the alias, shared between calls\n     */\n" )
+                .append( "    public static " ).append( className ).append( " alias( String alias ) {\n" )
+                .append( "        if ( alias == null ) return $ROOT;\n" )
+                .append( "        " ).append( className ).append( " path = $ALIASES.get( alias );\n" )
+                .append( "        if ( path == null ) {\n" )
+                .append( "            path = new " ).append( className ).append( "( alias );\n" )
+                .append( "            if ( $ALIASES.size() < $MAX_ALIASES ) {\n" )
+                .append( "                " ).append( className ).append( " previous = $ALIASES.putIfAbsent( alias, path );\n" )
+                .append( "                if ( previous != null ) path = previous;\n" )
+                .append( "            }\n" )
+                .append( "        }\n" )
+                .append( "        return path;\n" )
+                .append( "    }\n\n" );
+
+        source.append( "    /**\n     * @param path full path to the entity, e.g. from an association of another entity\n     * @return new path object\n     */\n" )
+                .append( "    public static " ).append( className ).append( " of( String path ) {\n" )
+                .append( "        return path == null ? $ROOT : new " ).append( className ).append( "( path );\n" )
+                .append( "    }\n" );
+
+        for ( Property property : properties ) {
+            String name = property.name;
+            String field = fields.get( property );
+            String method = RESERVED.contains( name ) ? name + "_" : name;
+            String target = associationPathClass( property );
+
+            source.append( '\n' );
+            if ( target == null ) {
+                source.append( "    public " ).append( ENTITY_PATH ).append( ' ' ).append( method ).append( "() {\n" )
+                        .append( "        return this." ).append( field ).append( ";\n" )
+                        .append( "    }\n" );
+            } else {
+                // the local is named so that it can't clash with a property, the field is always qualified
+                source.append( "    public " ).append( target ).append( ' ' ).append( method ).append( "() {\n" )
+                        .append( "        " ).append( target ).append( " $path = this." ).append( field ).append( ";\n" )
+                        .append( "        if ( $path == null ) this." ).append( field ).append( " = $path = " ).append( target )
+                        .append( ".of( step( " ).append( constantName( property.name ) ).append( " ) );\n" )
+                        .append( "        return $path;\n" )
+                        .append( "    }\n" );
+            }
+        }
+
+        source.append( "}\n" );
+        return source.toString();
+    }
+
+    /**
+     * Persistent properties of the type and of its entity and mapped superclasses: non-static, non-transient fields
+     * with field access, getters with property access. Members annotated with {@code @Access} are mapped whatever
+     * the access type of their class
+     * @param type entity or embeddable
+     * @return properties in declaration order, superclass properties first
+     */
+    private List<Property> properties( TypeElement type ) {
+        List<TypeElement> hierarchy = new ArrayList<>();
+        for ( TypeElement current = type; current != null; current = superclassOf( current ) ) {
+            if ( current != type && !hasAnnotation( current, ENTITY ) && !hasAnnotation( current, MAPPED_SUPERCLASS ) ) break;
+            hierarchy.add( 0, current );
+        }
+
+        boolean propertyAccess = isPropertyAccess( hierarchy );
+        Map<String, Property> properties = new LinkedHashMap<>();
+        for ( TypeElement current : hierarchy ) {
+            String classAccess = accessOf( current );
+            boolean classPropertyAccess = classAccess != null ? classAccess.equals( "PROPERTY" ) : propertyAccess;
+
+            for ( VariableElement field : ElementFilter.fieldsIn( current.getEnclosedElements() ) ) {
+                if ( field.getModifiers().contains( Modifier.STATIC ) || field.getModifiers().contains( Modifier.TRANSIENT ) ) continue;
+                if ( hasAnnotation( field, TRANSIENT ) ) continue;
+                if ( classPropertyAccess && !"FIELD".equals( accessOf( field ) ) ) continue;
+                String name = field.getSimpleName().toString();
+                properties.putIfAbsent( name, new Property( name, field.asType(), field ) );
+            }
+
+            for ( ExecutableElement method : ElementFilter.methodsIn( current.getEnclosedElements() ) ) {
+                String name = propertyName( method );
+                if ( name == null || hasAnnotation( method, TRANSIENT ) ) continue;
+                if ( !classPropertyAccess && !"PROPERTY".equals( accessOf( method ) ) ) continue;
+                properties.putIfAbsent( name, new Property( name, method.getReturnType(), method ) );
+            }
+        }
+        return new ArrayList<>( properties.values() );
+    }
+
+    /**
+     * Default access type of the hierarchy: {@code @Access} of the topmost class that has it, otherwise
+     * the member annotated with {@code @Id} or {@code @EmbeddedId}
+     * @param hierarchy persistent classes, topmost first
+     * @return {@code true} for property access, {@code false} for field access
+     */
+    private static boolean isPropertyAccess( List<TypeElement> hierarchy ) {
+        for ( TypeElement current : hierarchy ) {
+            String access = accessOf( current );
+            if ( access != null ) return access.equals( "PROPERTY" );
+        }
+        for ( TypeElement current : hierarchy ) {
+            for ( VariableElement field : ElementFilter.fieldsIn( current.getEnclosedElements() ) ) {
+                if ( isId( field ) ) return false;
+            }
+            for ( ExecutableElement method : ElementFilter.methodsIn( current.getEnclosedElements() ) ) {
+                if ( isId( method ) && propertyName( method ) != null ) return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isId( Element member ) {
+        return hasAnnotation( member, ID ) || hasAnnotation( member, EMBEDDED_ID );
+    }
+
+    /**
+     * @param element class or member
+     * @return name of the {@code AccessType} constant given with {@code @Access}, {@code null} without the annotation
+     */
+    private static String accessOf( Element element ) {
+        AnnotationMirror access = annotation( element, ACCESS );
+        if ( access == null ) return null;
+        for ( Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : access.getElementValues().entrySet() ) {
+            if ( value.getKey().getSimpleName().contentEquals( "value" ) && value.getValue().getValue() instanceof VariableElement )
+                return ( ( VariableElement ) value.getValue().getValue() ).getSimpleName().toString();
+        }
+        return null;
+    }
+
+    /**
+     * @param method method of a persistent class
+     * @return name of the property if the method is a getter, {@code null} otherwise
+     */
+    private static String propertyName( ExecutableElement method ) {
+        if ( method.getModifiers().contains( Modifier.STATIC ) || !method.getParameters().isEmpty() ) return null;
+
+        String name = method.getSimpleName().toString();
+        TypeKind returnType = method.getReturnType().getKind();
+        int prefix;
+        if ( name.startsWith( "get" ) && returnType != TypeKind.VOID ) prefix = 3;
+        else if ( name.startsWith( "is" ) && returnType == TypeKind.BOOLEAN ) prefix = 2;
+        else return null;
+        if ( name.length() == prefix ) return null;
+
+        // JavaBeans rule: getURL is the property URL, getName is name
+        if ( name.length() > prefix + 1 && Character.isUpperCase( name.charAt( prefix + 1 ) ) && Character.isUpperCase( name.charAt( prefix ) ) )
+            return name.substring( prefix );
+        return Character.toLowerCase( name.charAt( prefix ) ) + name.substring( prefix + 1 );
+    }
+
+    /**
+     * @param property persistent property
+     * @return qualified name of generated path class if property references an entity or an embeddable, {@code null} otherwise
+     */
+    private String associationPathClass( Property property ) {
+        TypeMirror type = property.type;
+        if ( type.getKind() != TypeKind.DECLARED ) return null;
+
+        Element element = ( ( DeclaredType ) type ).asElement();
+        if ( !( element instanceof TypeElement ) ) return null;
+        if ( !hasAnnotation( element, ENTITY ) && !hasAnnotation( element, EMBEDDABLE ) ) return null;
+
+        String packageName = packageOf( ( TypeElement ) element );
+        String className = pathClassName( ( TypeElement ) element );
+        return packageName.isEmpty() ? className : packageName + "." + className;
+    }
+
+    private TypeElement superclassOf( TypeElement type ) {
+        TypeMirror superclass = type.getSuperclass();
+        if ( superclass.getKind() != TypeKind.DECLARED ) return null;
+        return ( TypeElement ) ( ( DeclaredType ) superclass ).asElement();
+    }
+
+    private String packageOf( TypeElement type ) {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf( type );
+        return packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+    }
+
+    static String pathClassName( TypeElement type ) {
+        StringBuilder name = new StringBuilder( type.getSimpleName() );
+        for ( Element outer = type.getEnclosingElement(); outer.getKind().isClass() || outer.getKind().isInterface(); outer = outer.getEnclosingElement() ) {
+            name.insert( 0, outer.getSimpleName() + "_" );
+        }
+        return name.append( SUFFIX ).toString();
+    }
+
+    static String constantName( String name ) {
+        StringBuilder constant = new StringBuilder( name.length() + 4 );
+        for ( int i = 0; i < name.length(); i++ ) {
+            char c = name.charAt( i );
+            if ( Character.isUpperCase( c ) && i > 0 && !Character.isUpperCase( name.charAt( i - 1 ) ) ) constant.append( '_' );
+            constant.append( c );
+        }
+        return constant.toString().toUpperCase( Locale.ROOT );
+    }
+
+    private static boolean hasAnnotation( Element element, Set<String> names ) {
+        return annotation( element, names ) != null;
+    }
+
+    private static AnnotationMirror annotation( Element element, Set<String> names ) {
+        for ( AnnotationMirror annotation : element.getAnnotationMirrors() ) {
+            Element annotationType = annotation.getAnnotationType().asElement();
+            if ( annotationType instanceof TypeElement && names.contains( ( ( TypeElement ) annotationType ).getQualifiedName().toString() ) ) return annotation;
+        }
+        return null;
+    }
+
+    private static Set<String> annotations( String simpleName ) {
+        return new LinkedHashSet<>( Arrays.asList( "javax.persistence." + simpleName, "jakarta.persistence." + simpleName ) );
+    }
+
+    /**
+     * Kinds of type elements that get a path class
+     * @param kind element kind
+     * @return {@code true} for classes
+     */
+    private static boolean isSupported( ElementKind kind ) {
+        return kind == ElementKind.CLASS;
+    }
+
+    /**
+     * Persistent property, mapped by a field or by a getter
+     */
+    private static final class Property {
+        private final String name;
+        private final TypeMirror type;
+        private final Element element;
+
+        private Property( String name, TypeMirror type, Element element ) {
+            this.name = name;
+            this.type = type;
+            this.element = element;
+        }
+    }
+}
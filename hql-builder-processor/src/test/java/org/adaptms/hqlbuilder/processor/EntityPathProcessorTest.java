@@ -0,0 +1,156 @@
+package org.adaptms.hqlbuilder.processor;
+
+import org.adaptms.hqlbuilder.property.EntityPath;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class EntityPathProcessorTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void generatesAllocationFreePaths() throws Exception {
+        ClassLoader loader = compile(
+                "package test;\n"
+                        + "@javax.persistence.Entity public class Customer {\n"
+                        + "    private Long id; private String firstName; private Address address; private Customer referrer;\n"
+                        + "    private static String IGNORED; private transient String ignoredToo; @javax.persistence.Transient private String alsoIgnored;\n"
+                        + "}\n",
+                "package test;\n"
+                        + "@javax.persistence.Embeddable public class Address { private String city; }\n" );
+
+        Class<?> customerPath = loader.loadClass( "test.CustomerPath" );
+        assert EntityPath.class.isAssignableFrom( customerPath );
+        assert customerPath.getField( "FIRST_NAME" ).get( null ).equals( "firstName" );
+
+        Object root = customerPath.getMethod( "root" ).invoke( null );
+        Object alias = customerPath.getMethod( "alias", String.class ).invoke( null, "c" );
+        assert alias == customerPath.getMethod( "alias", String.class ).invoke( null, "c" );
+
+        Method firstName = customerPath.getMethod( "firstName" );
+        assert ( ( EntityPath ) firstName.invoke( root ) ).getPath().equals( "firstName" );
+        assert ( ( EntityPath ) firstName.invoke( alias ) ).getPath().equals( "c.firstName" );
+        assert firstName.invoke( alias ) == firstName.invoke( alias );
+
+        Object referrer = customerPath.getMethod( "referrer" ).invoke( alias );
+        assert referrer == customerPath.getMethod( "referrer" ).invoke( alias );
+        Object address = customerPath.getMethod( "address" ).invoke( referrer );
+        Object city = loader.loadClass( "test.AddressPath" ).getMethod( "city" ).invoke( address );
+        assert ( ( EntityPath ) city ).getPath().equals( "c.referrer.address.city" );
+
+        for ( String ignored : new String[] { "IGNORED", "ignoredToo", "alsoIgnored" } ) {
+            assert noMethod( customerPath, ignored );
+        }
+    }
+
+    @Test
+    void associationNamedPath() throws Exception {
+        ClassLoader loader = compile(
+                "package test;\n"
+                        + "@javax.persistence.Entity public class Route { private Long id; private Route path; private Route $path; }\n" );
+
+        Class<?> routePath = loader.loadClass( "test.RoutePath" );
+        assert Modifier.isVolatile( routePath.getDeclaredField( "path" ).getModifiers() );
+
+        Object alias = routePath.getMethod( "alias", String.class ).invoke( null, "r" );
+        Object path = routePath.getMethod( "path" ).invoke( alias );
+        assert path == routePath.getMethod( "path" ).invoke( alias );
+        assert ( ( EntityPath ) path ).getPath().equals( "r.path" );
+        assert ( ( EntityPath ) routePath.getMethod( "$path" ).invoke( path ) ).getPath().equals( "r.path.$path" );
+    }
+
+    @Test
+    void propertyAccessMapsGetters() throws Exception {
+        ClassLoader loader = compile(
+                "package test;\n"
+                        + "@javax.persistence.Entity public class Account {\n"
+                        + "    private Long key; private String cachedLabel; @javax.persistence.Access( javax.persistence.AccessType.FIELD ) private int version;\n"
+                        + "    @javax.persistence.Id public Long getId() { return key; }\n"
+                        + "    public String getOwnerName() { return null; }\n"
+                        + "    public boolean isActive() { return true; }\n"
+                        + "    public String getURL() { return null; }\n"
+                        + "    public Account getParent() { return null; }\n"
+                        + "    @javax.persistence.Transient public String getLabel() { return cachedLabel; }\n"
+                        + "    public static String getDefault() { return null; }\n"
+                        + "}\n" );
+
+        Class<?> accountPath = loader.loadClass( "test.AccountPath" );
+        assert accountPath.getField( "OWNER_NAME" ).get( null ).equals( "ownerName" );
+        Object alias = accountPath.getMethod( "alias", String.class ).invoke( null, "a" );
+        for ( String property : new String[] { "id", "ownerName", "active", "URL", "version" } ) {
+            assert ( ( EntityPath ) accountPath.getMethod( property ).invoke( alias ) ).getPath().equals( "a." + property );
+        }
+        Object parent = accountPath.getMethod( "parent" ).invoke( alias );
+        assert accountPath.isInstance( parent ) && ( ( EntityPath ) parent ).getPath().equals( "a.parent" );
+
+        for ( String ignored : new String[] { "key", "cachedLabel", "label", "default" } ) {
+            assert noMethod( accountPath, ignored );
+        }
+    }
+
+    @Test
+    void collidingConstantNamesAreReported() throws Exception {
+        String errors = compileWithErrors(
+                "package test;\n"
+                        + "@javax.persistence.Entity public class Clash { private Long id; private String fooBar; private String foo_bar; }\n" );
+
+        assert errors.contains( "Properties \"fooBar\" and \"foo_bar\" of test.Clash have the same constant name FOO_BAR." ) : errors;
+    }
+
+    private static boolean noMethod( Class<?> type, String name ) {
+        try {
+            type.getMethod( name );
+            return false;
+        } catch ( NoSuchMethodException nsme ) {
+            return true;
+        }
+    }
+
+    private ClassLoader compile( String... sources ) throws Exception {
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        int result = run( errors, sources );
+        assert result == 0 : errors.toString( StandardCharsets.UTF_8.name() );
+
+        return new URLClassLoader( new URL[] { directory.resolve( "classes" ).toUri().toURL() }, getClass().getClassLoader() );
+    }
+
+    private String compileWithErrors( String... sources ) throws Exception {
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        int result = run( errors, sources );
+        assert result != 0 : "Compilation must fail";
+        return errors.toString( StandardCharsets.UTF_8.name() );
+    }
+
+    private int run( ByteArrayOutputStream errors, String... sources ) throws Exception {
+        Path sourceDirectory = Files.createDirectories( directory.resolve( "src/test" ) );
+        Path classes = Files.createDirectories( directory.resolve( "classes" ) );
+        String[] arguments = new String[ sources.length + 6 ];
+        arguments[0] = "-classpath";
+        arguments[1] = System.getProperty( "java.class.path" );
+        arguments[2] = "-processor";
+        arguments[3] = EntityPathProcessor.class.getName();
+        arguments[4] = "-d";
+        arguments[5] = classes.toString();
+        for ( int i = 0; i < sources.length; i++ ) {
+            String name = sources[i].substring( sources[i].indexOf( "class " ) + 6 ).split( "[ {]" )[0];
+            Path file = sourceDirectory.resolve( name + ".java" );
+            Files.write( file, sources[i].getBytes( StandardCharsets.UTF_8 ) );
+            arguments[ 6 + i ] = file.toString();
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        return compiler.run( null, null, errors, arguments );
+    }
+}
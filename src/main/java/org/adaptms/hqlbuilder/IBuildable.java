@@ -5,4 +5,12 @@ package org.adaptms.hqlbuilder;
  */
 public interface IBuildable {
     String build();
+
+    /**
+     * Render this object into an existing buffer instead of creating an intermediate string
+     * @param builder buffer to append to
+     */
+    default void appendTo( StringBuilder builder ) {
+        builder.append( build() );
+    }
 }
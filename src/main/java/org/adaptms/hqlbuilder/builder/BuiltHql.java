@@ -0,0 +1,32 @@
+package org.adaptms.hqlbuilder.builder;
+
+/**
+ * HQL query built by {@link HQLBuilder#buildWithShape()}, together with the shape it was built for.
+ * <p>
+ * Lets executors report the very HQL and shape they created the query from, without looking them up again.
+ *
+ * @author ppolyakov at 18.10.2026 21:40
+ */
+public final class BuiltHql {
+
+    private final String hql;
+    private final QueryShape shape;
+
+    BuiltHql( String hql, QueryShape shape ) {
+        this.hql = hql;
+        this.shape = shape;
+    }
+
+    public String getHql() {
+        return hql;
+    }
+
+    public QueryShape getShape() {
+        return shape;
+    }
+
+    @Override
+    public String toString() {
+        return hql;
+    }
+}
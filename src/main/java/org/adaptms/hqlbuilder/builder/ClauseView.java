@@ -0,0 +1,91 @@
+package org.adaptms.hqlbuilder.builder;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Modifiable view of a clause list of a builder, as returned by its getters.
+ * <p>
+ * Reads go to the current {@link PersistentList} of the builder. Changes are copy-on-write: the view builds a new list
+ * and replaces the one of the builder, so clones sharing the old list never see them. Appending at the end
+ * doesn't copy, see {@link PersistentList#plus(Object)}.
+ *
+ * @author ppolyakov at 18.10.2026 19:30
+ */
+final class ClauseView<E> extends AbstractList<E> implements RandomAccess {
+
+    private final Supplier<PersistentList<E>> getter;
+    private final Consumer<PersistentList<E>> setter;
+
+    ClauseView( Supplier<PersistentList<E>> getter, Consumer<PersistentList<E>> setter ) {
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    /**
+     * @return current list of the builder
+     */
+    PersistentList<E> current() {
+        return getter.get();
+    }
+
+    @Override
+    public E get( int index ) {
+        return current().get( index );
+    }
+
+    @Override
+    public int size() {
+        return current().size();
+    }
+
+    @Override
+    public boolean add( E element ) {
+        setter.accept( current().plus( element ) );
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add( int index, E element ) {
+        if ( index == size() ) {
+            add( element );
+            return;
+        }
+        List<E> copy = new ArrayList<>( current() );
+        copy.add( index, element );
+        replace( copy );
+    }
+
+    @Override
+    public E set( int index, E element ) {
+        List<E> copy = new ArrayList<>( current() );
+        E previous = copy.set( index, element );
+        replace( copy );
+        return previous;
+    }
+
+    @Override
+    public E remove( int index ) {
+        List<E> copy = new ArrayList<>( current() );
+        E removed = copy.remove( index );
+        replace( copy );
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        if ( isEmpty() ) return;
+        setter.accept( PersistentList.empty() );
+        modCount++;
+    }
+
+    private void replace( List<E> elements ) {
+        setter.accept( PersistentList.copyOf( elements ) );
+        modCount++;
+    }
+}
@@ -2,6 +2,9 @@ package org.adaptms.hqlbuilder.builder;
 
 import org.adaptms.hqlbuilder.IBuildable;
 import org.adaptms.hqlbuilder.expression.AbstractExpression;
+import org.adaptms.hqlbuilder.expression.ExpressionType;
+import org.adaptms.hqlbuilder.expression.Expressions;
+import org.adaptms.hqlbuilder.expression.Parameter;
 import org.adaptms.hqlbuilder.expression.column.ColumnExpression;
 import org.adaptms.hqlbuilder.expression.column.ColumnExpressionType;
 import org.adaptms.hqlbuilder.expression.group.GroupByExpression;
@@ -12,11 +15,14 @@ import org.adaptms.hqlbuilder.expression.order.QueryOrderDirection;
 import org.adaptms.hqlbuilder.expression.set.SetExpression;
 import org.adaptms.hqlbuilder.expression.where.CommonWhereExpression;
 import org.adaptms.hqlbuilder.expression.where.WhereExpression;
+import org.adaptms.hqlbuilder.expression.where.WhereNormalizer;
+import org.adaptms.hqlbuilder.metadata.EntityMetadata;
+import org.adaptms.hqlbuilder.metadata.PathValidator;
+import org.adaptms.hqlbuilder.metrics.BuildEvent;
+import org.adaptms.hqlbuilder.metrics.QueryListeners;
 import org.adaptms.hqlbuilder.property.EntityPath;
 
-import javax.persistence.Entity;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * @author ppolyakov at 24.03.2022 16:07
@@ -24,49 +30,70 @@ import java.util.stream.Collectors;
 public class HQLBuilder implements IBuildable {
     private static final String CLASS_ERROR_MESSAGE_START = "Class \"";
 
-    private String internalUUID; // if query without alias
+    private static volatile ParameterNaming defaultParameterNaming = ParameterNaming.NAMED;
+    private static volatile boolean defaultInListPadding;
+    private static volatile int defaultInListChunkSize;
+    private static volatile boolean defaultPathValidation;
+    private static volatile boolean defaultWhereNormalization;
+    private static volatile boolean defaultVariableDeduplication;
+
+    private String internalUUID;
 
     private String rootEntityClass;
+    private EntityMetadata rootEntity;
     private String rootEntityAlias;
     private BuilderMode mode;
 
-    private List<ColumnExpression> columns;
-    private List<JoinExpression> joinExpressions;
-    private List<SetExpression> setExpressions;
-    private List<WhereExpression> whereExpressions;
-    private List<OrderByExpression> orderByExpressions;
-    private List<GroupByExpression> groupByExpressions;
-
-    private Map<String, Object> variables = new HashMap<>();
+    // clause lists are persistent, so clones share them until one of the builders appends to its own version
+    private PersistentList<ColumnExpression> columns = PersistentList.empty();
+    private PersistentList<JoinExpression> joinExpressions = PersistentList.empty();
+    private PersistentList<SetExpression> setExpressions = PersistentList.empty();
+    private PersistentList<WhereExpression> whereExpressions = PersistentList.empty();
+    private PersistentList<OrderByExpression> orderByExpressions = PersistentList.empty();
+    private PersistentList<GroupByExpression> groupByExpressions = PersistentList.empty();
+
+    // shape and rendering of join, set and where clauses, shared with clones and derived queries
+    private Body body;
+
+    // variables are shared with clones, which append to their own versions
+    private VariableStore variables = VariableStore.empty();
+    private int variableCounter;
+    // subqueries whose variables belong to this query, they are referenced instead of copied
+    private PersistentList<SubqueryScope> subqueries = PersistentList.empty();
+    // variables and subqueries added by SET clauses, they are never shared with other clauses, see toSelectQuery()
+    private PersistentList<String> setVariables = PersistentList.empty();
+    private PersistentList<SubqueryScope> setSubqueries = PersistentList.empty();
+    private ParameterNaming parameterNaming = defaultParameterNaming;
+    private boolean inListPadding = defaultInListPadding;
+    private int inListChunkSize = defaultInListChunkSize;
+    private boolean pathValidation = defaultPathValidation;
+    private boolean whereNormalization = defaultWhereNormalization;
+    private boolean variableDeduplication = defaultVariableDeduplication;
 
     public HQLBuilder() {
     }
 
     public HQLBuilder( Class<?> rootEntityClass, String rootEntityAlias, BuilderMode mode ) {
-        init( rootEntityClass, rootEntityAlias, mode );
+        init( EntityMetadata.of( rootEntityClass ), rootEntityAlias, mode );
     }
 
     public HQLBuilder( String rootEntityClass, String rootEntityAlias, BuilderMode mode ) {
         try {
-            init( Class.forName( rootEntityClass ), rootEntityAlias, mode );
+            init( EntityMetadata.of( rootEntityClass ), rootEntityAlias, mode );
         } catch ( ClassNotFoundException cnfe ) {
             throw new IllegalStateException( CLASS_ERROR_MESSAGE_START + rootEntityClass + "\" doesn't exist." );
         }
     }
 
-    private void init( Class<?> rootEntityClass, String rootEntityAlias, BuilderMode mode ) {
-        if ( !rootEntityClass.isAnnotationPresent( Entity.class ) )
-            throw new IllegalStateException( CLASS_ERROR_MESSAGE_START + rootEntityClass.getCanonicalName() + "\" is not an Entity. You need to annotate it with javax.persistence.Entity." );
-
-        this.rootEntityClass = rootEntityClass.getCanonicalName();
+    private void init( EntityMetadata rootEntity, String rootEntityAlias, BuilderMode mode ) {
+        this.rootEntity = rootEntity.requireEntity();
+        this.rootEntityClass = rootEntity.getName();
 
         if ( mode.isNeedsAlias() && ( rootEntityAlias == null || rootEntityAlias.isEmpty() ) )
             throw new IllegalStateException( mode.name() + " query required alias. Specify one." );
 
         this.rootEntityAlias = rootEntityAlias;
         this.mode = mode;
-
-        if ( !this.mode.isNeedsAlias() ) internalUUID = UUID.randomUUID().toString().replaceAll( "-", "_" );
     }
 
     /**
@@ -104,8 +131,7 @@ public class HQLBuilder implements IBuildable {
      * @return current builder
      */
     public HQLBuilder column( String property, ColumnExpressionType expressionType ) {
-        if ( columns == null ) columns = new ArrayList<>();
-        columns.add( new ColumnExpression( property, expressionType ) );
+        columns = columns.plus( new ColumnExpression( property, expressionType ) );
         return this;
     }
 
@@ -133,13 +159,64 @@ public class HQLBuilder implements IBuildable {
      */
     public HQLBuilder join( JoinType type, String joinEntityClass, String joinEntityAlias, CommonWhereExpression withExpression ) {
         try {
-            addJoin( type, Class.forName( joinEntityClass ), joinEntityAlias, withExpression );
+            addJoin( type, EntityMetadata.of( joinEntityClass ).getType(), joinEntityAlias, withExpression );
         } catch ( ClassNotFoundException cnfe ) {
-            throw new IllegalStateException( CLASS_ERROR_MESSAGE_START + rootEntityClass + "\" in join doesn't exist." );
+            throw new IllegalStateException( CLASS_ERROR_MESSAGE_START + joinEntityClass + "\" in join doesn't exist." );
         }
         return this;
     }
 
+    /**
+     * Join an association of the root or of another joined entity, e.g. {@code left join te.reference ate}
+     * @param type type of join
+     * @param association path of the association, e.g. {@code TestEntity.alias( "te" ).reference()}
+     * @param joinEntityAlias alias of joined entity, may be {@code null}
+     * @return current builder
+     */
+    public HQLBuilder join( JoinType type, EntityPath association, String joinEntityAlias ) {
+        return join( type, association, joinEntityAlias, null );
+    }
+
+    /**
+     * Join an association with an additional condition, e.g. {@code left join te.reference ate with ate.one = :var_te0}
+     * @param type type of join
+     * @param association path of the association
+     * @param joinEntityAlias alias of joined entity, may be {@code null}
+     * @param withExpression additional condition to join on, may be {@code null}
+     * @return current builder
+     */
+    public HQLBuilder join( JoinType type, EntityPath association, String joinEntityAlias, CommonWhereExpression withExpression ) {
+        addJoin( new JoinExpression( type, association, joinEntityAlias, false, withExpression ) );
+        return this;
+    }
+
+    /**
+     * Fetch join an association, so that it is loaded with the rows of the query instead of one query per row,
+     * e.g. {@code left join fetch te.reference}
+     * @param type {@link JoinType#LEFT} to keep rows without the association, {@link JoinType#INNER} to drop them
+     * @param association path of the association
+     * @param joinEntityAlias alias of joined entity, may be {@code null}
+     * @return current builder
+     * @throws IllegalStateException if this is not a SELECT query
+     */
+    public HQLBuilder joinFetch( JoinType type, EntityPath association, String joinEntityAlias ) {
+        if ( getMode() != BuilderMode.SELECT )
+            throw new IllegalStateException( "Only SELECT queries may have fetch joins, got: " + getMode().name() );
+        addJoin( new JoinExpression( type, association, joinEntityAlias, true, null ) );
+        return this;
+    }
+
+    /**
+     * Fetch join an association without alias
+     * @param type type of join
+     * @param association path of the association
+     * @return current builder
+     * @see #joinFetch(JoinType, EntityPath, String)
+     */
+    public HQLBuilder joinFetch( JoinType type, EntityPath association ) {
+        return joinFetch( type, association, null );
+    }
+
     /**
      * Add join (internal method)
      * @param type type of join
@@ -148,10 +225,16 @@ public class HQLBuilder implements IBuildable {
      * @param withExpression expression to join on
      */
     protected void addJoin( JoinType type, Class<?> joinEntityClass, String joinEntityAlias, CommonWhereExpression withExpression ) {
-        if ( joinExpressions == null ) joinExpressions = new ArrayList<>();
-        JoinExpression expression = new JoinExpression( type, joinEntityClass.getCanonicalName(), joinEntityAlias, withExpression );
+        addJoin( new JoinExpression( type, EntityMetadata.of( joinEntityClass ), joinEntityAlias, withExpression ) );
+    }
+
+    /**
+     * Add join (internal method)
+     * @param expression join expression
+     */
+    protected void addJoin( JoinExpression expression ) {
         expression.init( this );
-        joinExpressions.add( expression );
+        joinExpressions = joinExpressions.plus( expression );
     }
 
     /**
@@ -161,10 +244,20 @@ public class HQLBuilder implements IBuildable {
      * @return current builder
      */
     public HQLBuilder set( EntityPath path, Object value ) {
-        if ( setExpressions == null ) setExpressions = new ArrayList<>();
+        int variableCount = variables.size();
+        int subqueryCount = subqueries.size();
+
         SetExpression expression = new SetExpression( path.getPath(), value );
         expression.init( this );
-        setExpressions.add( expression );
+        setExpressions = setExpressions.plus( expression );
+
+        // parameters are shared by name with other clauses, so they are not owned by the clause
+        for ( int i = variableCount; i < variables.size(); i++ ) {
+            if ( !( variables.valueAt( i ) instanceof Parameter ) ) setVariables = setVariables.plus( variables.nameAt( i ) );
+        }
+        for ( int i = subqueryCount; i < subqueries.size(); i++ ) {
+            setSubqueries = setSubqueries.plus( subqueries.get( i ) );
+        }
         return this;
     }
 
@@ -174,19 +267,33 @@ public class HQLBuilder implements IBuildable {
      * @return current builder
      */
     public HQLBuilder where( CommonWhereExpression expression ) {
-        if ( whereExpressions == null ) whereExpressions = new ArrayList<>();
-        whereExpressions.add( new WhereExpression( expression, this ) );
+        if ( !isWhereNormalization() ) {
+            whereExpressions = whereExpressions.plus( new WhereExpression( expression, this ) );
+            return this;
+        }
+
+        // top level and is split into separate clauses, so that predicates repeated by later calls are dropped too
+        for ( CommonWhereExpression predicate : WhereNormalizer.conjuncts( WhereNormalizer.normalize( expression ) ) ) {
+            if ( !hasWhere( predicate ) ) whereExpressions = whereExpressions.plus( new WhereExpression( predicate, this ) );
+        }
         return this;
     }
 
+    private boolean hasWhere( CommonWhereExpression predicate ) {
+        if ( null == predicate ) return false;
+        for ( WhereExpression where : whereExpressions ) {
+            if ( WhereNormalizer.isSame( where.getExpression(), predicate ) ) return true;
+        }
+        return false;
+    }
+
     /**
      * Add a GROUP BY clause
      * @param path path to prop
      * @return current builder
      */
     public HQLBuilder groupBy( EntityPath path ) {
-        if ( groupByExpressions == null ) groupByExpressions = new ArrayList<>();
-        groupByExpressions.add( new GroupByExpression( path.getPath() ) );
+        groupByExpressions = groupByExpressions.plus( new GroupByExpression( path.getPath() ) );
         return this;
     }
 
@@ -206,89 +313,455 @@ public class HQLBuilder implements IBuildable {
      * @return current builder
      */
     public HQLBuilder orderBy( EntityPath path, QueryOrderDirection direction ) {
-        if ( orderByExpressions == null ) orderByExpressions = new ArrayList<>();
-        orderByExpressions.add( new OrderByExpression( path.getPath(), direction ) );
+        orderByExpressions = orderByExpressions.plus( new OrderByExpression( path.getPath(), direction ) );
         return this;
     }
 
     /**
-     * Add variable to this query and assign identifier
+     * Keyset (seek) pagination: continue after the row with the given values of ORDER BY properties.
+     * For {@code order by a asc, b desc} adds {@code (a > :a or (a = :a and b < :b))}, so the next page is read
+     * with an index seek instead of skipping rows with offset. Order must be unique, e.g. end with the id
+     * @param lastValues values of ORDER BY properties of the last row of the previous page, in order of the clauses
+     * @return current builder
+     * @throws IllegalStateException if the query has no order
+     * @throws IllegalArgumentException if number of values doesn't match the order or a value is null
+     */
+    public HQLBuilder seekAfter( Object... lastValues ) {
+        if ( orderByExpressions.isEmpty() ) throw new IllegalStateException( "Keyset pagination requires ORDER BY clause." );
+        if ( lastValues == null || lastValues.length != orderByExpressions.size() )
+            throw new IllegalArgumentException( "Wrong number of keyset values, expected: " + orderByExpressions.size() + ", got: " + ( lastValues == null ? 0 : lastValues.length ) );
+
+        CommonWhereExpression[] alternatives = new CommonWhereExpression[ lastValues.length ];
+        for ( int i = 0; i < lastValues.length; i++ ) {
+            if ( lastValues[i] == null ) throw new IllegalArgumentException( "Keyset value may not be null, position: " + i );
+
+            // equal on all previous order properties and after the last row on this one
+            CommonWhereExpression[] conditions = new CommonWhereExpression[ i + 1 ];
+            for ( int j = 0; j < i; j++ ) {
+                conditions[j] = Expressions.eq( EntityPath.fromString( orderByExpressions.get( j ).getPath() ), lastValues[j] );
+            }
+            OrderByExpression order = orderByExpressions.get( i );
+            conditions[i] = order.getDirection() == QueryOrderDirection.ASC
+                    ? Expressions.gt( EntityPath.fromString( order.getPath() ), lastValues[i] )
+                    : Expressions.lt( EntityPath.fromString( order.getPath() ), lastValues[i] );
+
+            alternatives[i] = conditions.length == 1 ? conditions[0] : Expressions.and( conditions );
+        }
+
+        return where( alternatives.length == 1 ? alternatives[0] : Expressions.or( alternatives ) );
+    }
+
+    /**
+     * Add variable to this query and assign identifier. With {@link #setVariableDeduplication(boolean)} the identifier
+     * of an earlier variable holding the same value is returned instead
      * @param variable object to add as variable
      * @return assigned identifier
      */
     public String addVariable( Object variable ) {
-        String varName = "var_" + ( getMode().isNeedsAlias() ? getRootEntityAlias() : internalUUID ) + getVariables().size();
-        getVariables().put( varName, variable );
+        if ( isVariableDeduplication() && variable != null && !( variable instanceof Parameter ) ) {
+            int index = variables.indexOfShareable( variable );
+            if ( index >= 0 && !setVariables.contains( variables.nameAt( index ) ) ) return variables.nameAt( index );
+        }
+
+        String varName = getParameterNaming().name( getVariableScope(), variableCounter++ );
+        // names taken by subqueries are skipped
+        while ( !subqueries.isEmpty() && isVariableDefined( varName ) ) varName = getParameterNaming().name( getVariableScope(), variableCounter++ );
+        variables = variables.plus( varName, variable );
         return varName;
     }
 
+    /**
+     * Add variable to this query
+     * @param variable object to add as variable
+     * @return reference to the variable to use in the query, e.g. {@code :var_te0}
+     */
+    public String addVariableReference( Object variable ) {
+        return getParameterNaming().reference( addVariable( variable ) );
+    }
+
+    /**
+     * Add variables of a subquery to this query. Variables are not copied: the subquery is referenced and its variables
+     * are read by {@link #getVariables()}. Generated variables whose names are already taken in this query
+     * by other values, e.g. by another subquery with the same alias, get new names, such as {@code var_tt0_s2},
+     * or the name an earlier subquery variable of the same name and value got;
+     * the subquery itself is not changed. Parameters of the same name are shared
+     * @param subquery builder of subquery, it must not be changed afterwards, expressions attach copies of builders
+     * @return new names of the subquery variables by their names in the subquery, empty if nothing was renamed
+     * @throws IllegalStateException if positional parameters are used, they can't be shared between queries,
+     * or if a parameter of the subquery has the name of another variable
+     */
+    public Map<String, String> addSubqueryVariables( HQLBuilder subquery ) {
+        Map<String, Object> subqueryVariables = subquery.getVariables();
+        if ( !subqueryVariables.isEmpty() && ( getParameterNaming().isPositional() || subquery.getParameterNaming().isPositional() ) )
+            throw new IllegalStateException( "Positional parameters can't be used in subqueries, use named parameters instead." );
+
+        Map<String, String> renames = new HashMap<>();
+        Map<String, String> names = new HashMap<>();
+        for ( Map.Entry<String, Object> variable : subqueryVariables.entrySet() ) {
+            String name = variable.getKey();
+            Object value = variable.getValue();
+            if ( isVariableDefined( name ) && !Objects.equals( value, getVariable( name ) ) ) {
+                if ( value instanceof Parameter )
+                    throw new IllegalStateException( "Parameter \"" + name + "\" is already defined in this query." );
+
+                String shared = findSubqueryVariable( name, value, renames );
+                if ( shared != null ) {
+                    renames.put( name, shared );
+                    continue;
+                }
+
+                int suffix = subqueries.size() + 1;
+                String renamed = name + "_s" + suffix;
+                while ( isVariableDefined( renamed ) || subqueryVariables.containsKey( renamed ) || names.containsKey( renamed ) ) renamed = name + "_s" + ++suffix;
+                renames.put( name, renamed );
+                name = renamed;
+            }
+            names.put( name, variable.getKey() );
+        }
+
+        SubqueryScope scope = new SubqueryScope( subquery, renames.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap( renames ), names );
+        subqueries = subqueries.plus( scope );
+        return scope.renames;
+    }
+
+    /**
+     * Find variable of an earlier subquery, e.g. of another copy of the same subquery, to share it
+     * @param name name of the variable in its subquery
+     * @param value value of the variable
+     * @param renames names already given to other variables of the subquery
+     * @return name of the variable in this query, {@code null} if there is none
+     */
+    private String findSubqueryVariable( String name, Object value, Map<String, String> renames ) {
+        for ( SubqueryScope scope : subqueries ) {
+            // variables of SET clauses are not shared, see toSelectQuery()
+            if ( setSubqueries.contains( scope ) ) continue;
+            for ( Map.Entry<String, String> variable : scope.names.entrySet() ) {
+                if ( variable.getValue().equals( name ) && !renames.containsValue( variable.getKey() )
+                        && Objects.equals( value, scope.query.getVariables().get( name ) ) ) return variable.getKey();
+            }
+        }
+        return null;
+    }
+
+    private boolean isVariableDefined( String name ) {
+        if ( variables.indexOf( name ) >= 0 ) return true;
+        for ( SubqueryScope scope : subqueries ) {
+            if ( scope.names.containsKey( name ) ) return true;
+        }
+        return false;
+    }
+
+    private Object getVariable( String name ) {
+        int index = variables.indexOf( name );
+        if ( index >= 0 ) return variables.valueAt( index );
+        for ( SubqueryScope scope : subqueries ) {
+            String original = scope.names.get( name );
+            if ( original != null ) return scope.query.getVariables().get( original );
+        }
+        return null;
+    }
+
+    /**
+     * Scope of generated variable names: alias for SELECT queries, mode for queries without alias
+     * @return variable scope
+     */
+    protected String getVariableScope() {
+        return getRootEntityAlias() != null ? getRootEntityAlias() : getMode().name().toLowerCase( Locale.ROOT );
+    }
+
+    /**
+     * Add named parameter placeholder to this query. Its value is bound later, see {@link #prepare()}
+     * @param parameter parameter placeholder
+     * @return parameter identifier
+     * @throws IllegalStateException if another parameter or variable is already registered with the same name,
+     * or if the query uses {@link ParameterNaming#POSITIONAL} naming, positions of its variables would be shifted
+     */
+    public String addParameter( Parameter parameter ) {
+        if ( getParameterNaming().isPositional() )
+            throw new IllegalStateException( "Named parameter \"" + parameter.getName() + "\" can't be used with positional parameters." );
+
+        Object existing = getVariable( parameter.getName() );
+        if ( existing != null && !parameter.equals( existing ) )
+            throw new IllegalStateException( "Parameter \"" + parameter.getName() + "\" is already defined in this query." );
+
+        if ( variables.indexOf( parameter.getName() ) < 0 ) variables = variables.plus( parameter.getName(), parameter );
+        return parameter.getName();
+    }
+
+    /**
+     * Render the query once and keep it with the values bound so far. Values of {@link Parameter} placeholders
+     * are given per call with {@link PreparedHql#bind(Object...)}
+     * @return immutable prepared query
+     */
+    public PreparedHql prepare() {
+        return new PreparedHql( build(), getVariables() );
+    }
+
+    /**
+     * Build HQL query. Queries of the same {@link QueryShape} are rendered once and then taken from {@link QueryCache}.
+     * Registered {@link org.adaptms.hqlbuilder.metrics.QueryListener}s are notified after every build
+     * @return HQL query
+     */
     public String build() {
+        return build( false ).getHql();
+    }
+
+    /**
+     * Build HQL query, see {@link #build()}, and keep the shape it was built for
+     * @return HQL query and its shape
+     */
+    public BuiltHql buildWithShape() {
+        return build( true );
+    }
+
+    private BuiltHql build( boolean withShape ) {
+        boolean listened = QueryListeners.isActive();
+        long start = listened ? System.nanoTime() : 0;
+
+        QueryShape shape = null;
+        String hql = null;
+        if ( QueryCache.isEnabled() ) {
+            shape = QueryShape.of( this );
+            hql = QueryCache.get( shape );
+        }
+        boolean cacheHit = hql != null;
+
+        if ( !cacheHit ) {
+            // fetch joins and paths only depend on the shape, so they are checked once before the shape is cached
+            checkFetchJoins();
+            if ( isPathValidation() ) validatePaths();
+            hql = shape != null ? QueryCache.put( shape, render() ) : render();
+        }
+
+        if ( shape == null && ( listened || withShape ) ) shape = QueryShape.of( this );
+        if ( listened ) {
+            long nanos = System.nanoTime() - start;
+            QueryListeners.fireBuild( new BuildEvent( shape, hql, getRootEntityClass(), getMode(), getVariables().size(), cacheHit, nanos ) );
+        }
+        return new BuiltHql( hql, shape );
+    }
+
+    /**
+     * Fetch joins initialize associations of the selected entities, so they are meaningless in queries that count rows,
+     * and providers reject them there
+     * @throws IllegalStateException if the query has fetch joins and count columns
+     */
+    private void checkFetchJoins() {
+        if ( !hasFetchJoins() ) return;
+        for ( ColumnExpression column : columns ) {
+            if ( column.getColumnExpressionType() == ColumnExpressionType.COUNT || column.getColumnExpressionType() == ColumnExpressionType.COUNT_DISTINCT )
+                throw new IllegalStateException( "Query with fetch joins can't count rows, use toCountQuery() to derive the count query." );
+        }
+    }
+
+    private boolean hasFetchJoins() {
+        for ( JoinExpression join : joinExpressions ) {
+            if ( join.isFetch() ) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Check all property paths of the query (columns, joins, set, where, group and order clauses, subqueries)
+     * against the mapped properties of the entities, see {@link EntityMetadata}
+     * @throws IllegalStateException if a path doesn't exist in the entity model
+     */
+    public void validatePaths() {
+        validatePaths( null );
+    }
+
+    /**
+     * Check property paths of the query, used for subqueries
+     * @param outer validator of the outer query, its aliases are visible in this query
+     * @throws IllegalStateException if a path doesn't exist in the entity model
+     */
+    public void validatePaths( PathValidator outer ) {
+        PathValidator validator = new PathValidator( outer, getRootEntity(), getRootEntityAlias() );
+        // joins go first to register their aliases
+        validatePaths( validator, joinExpressions );
+        validatePaths( validator, columns );
+        validatePaths( validator, setExpressions );
+        validatePaths( validator, whereExpressions );
+        validatePaths( validator, groupByExpressions );
+        validatePaths( validator, orderByExpressions );
+    }
+
+    private static void validatePaths( PathValidator validator, List<? extends AbstractExpression> expressions ) {
+        for ( AbstractExpression expression : expressions ) {
+            expression.validatePaths( validator );
+        }
+    }
+
+    /**
+     * Append structural description of this query (without variable values) to the shape
+     * @param shape shape to append to
+     */
+    protected void appendShape( QueryShape.Builder shape ) {
+        shape.add( getMode() ).add( getRootEntityClass() );
+        if ( getRootEntityAlias() != null ) shape.add( getRootEntityAlias() );
+        if ( isPathValidation() ) shape.add( "validated" ); // validated and unchecked queries are cached separately
+
+        appendShape( shape, ExpressionType.COLUMN, columns );
+        shape.add( body().getShape() );
+        appendShape( shape, ExpressionType.GROUP_BY, groupByExpressions );
+        appendShape( shape, ExpressionType.ORDER_BY, orderByExpressions );
+    }
+
+    private static void appendShape( QueryShape.Builder shape, ExpressionType section, List<? extends AbstractExpression> expressions ) {
+        if ( expressions.isEmpty() ) return;
+
+        shape.add( section ).add( expressions.size() );
+        for ( AbstractExpression expression : expressions ) {
+            expression.appendShape( shape );
+        }
+    }
+
+    /**
+     * Render HQL query without cache
+     * @return HQL query
+     */
+    protected String render() {
+        StringBuilder builder = new StringBuilder( estimateLength() );
+        appendTo( builder );
+        return builder.toString();
+    }
+
+    /**
+     * Render HQL query into the buffer, without cache. Used to render subqueries straight into the outer query.
+     * @param builder buffer to append to
+     */
+    @Override
+    public void appendTo( StringBuilder builder ) {
+        appendTo( builder, Collections.emptyMap() );
+    }
+
+    /**
+     * Render HQL query into the buffer with variables renamed, used for subqueries whose variables have other names
+     * in the outer query, see {@link #addSubqueryVariables(HQLBuilder)}
+     * @param builder buffer to append to
+     * @param renames new names of variables by their names in this query, may be empty
+     */
+    public void appendTo( StringBuilder builder, Map<String, String> renames ) {
         // start of query - select from / update / insert into etc. and entity class name
-        StringBuilder builder = new StringBuilder( getMode().name().toLowerCase( Locale.ROOT ) ).append( " " );
+        builder.append( getMode().name().toLowerCase( Locale.ROOT ) ).append( ' ' );
 
         // set columns that we want to select
-        if ( getMode().isNeedsAlias() && null != columns && !columns.isEmpty() ) {
-                builder.append( columns.stream().map( ColumnExpression::build ).collect( Collectors.joining( ", " ) ) ).append( " " );
+        if ( getMode().isNeedsAlias() && !columns.isEmpty() ) {
+            appendAll( builder, "", columns, ", ", renames );
+            builder.append( ' ' );
         } else if ( getMode().isNeedsAlias() ) {
-            builder.append( getRootEntityAlias() ).append( " " );
+            builder.append( getRootEntityAlias() ).append( ' ' );
         }
 
         // append additional keyword after columns if needed
         if ( getMode().getAdditionalKeyword() != null )
-            builder.append( getMode().getAdditionalKeyword() ).append( " " );
+            builder.append( getMode().getAdditionalKeyword() ).append( ' ' );
 
         builder.append( getRootEntityClass() ); // full entity name
 
-        // necessary for select query. Otherwise, will not append
-        if ( mode.isNeedsAlias() ) builder.append( " " ).append( getRootEntityAlias() );
+        // necessary for select query. Otherwise, will not append. Selects derived from update or delete queries have no alias
+        if ( mode.isNeedsAlias() && getRootEntityAlias() != null ) builder.append( ' ' ).append( getRootEntityAlias() );
+
+        if ( renames.isEmpty() ) {
+            builder.append( body().getRendered() );
+        } else {
+            // renamed rendering is only needed once per attached subquery, it is not kept
+            appendAll( builder, " ", joinExpressions, " ", renames );
+            appendAll( builder, " set ", setExpressions, ", ", renames );
+            appendAll( builder, " where ", whereExpressions, " and ", renames );
+        }
+        appendAll( builder, " group by ", groupByExpressions, ", ", renames );
+        appendAll( builder, " order by ", orderByExpressions, ", ", renames );
+    }
+
+    /**
+     * Join, set and where clauses of the query, with lazily computed shape and rendering
+     */
+    private static final class Body {
+        private final PersistentList<JoinExpression> joinExpressions;
+        private final PersistentList<SetExpression> setExpressions;
+        private final PersistentList<WhereExpression> whereExpressions;
+
+        private QueryShape shape;
+        private String rendered;
+
+        private Body( PersistentList<JoinExpression> joinExpressions, PersistentList<SetExpression> setExpressions, PersistentList<WhereExpression> whereExpressions ) {
+            this.joinExpressions = joinExpressions;
+            this.setExpressions = setExpressions;
+            this.whereExpressions = whereExpressions;
+        }
 
-        // join clauses
-        if ( null != joinExpressions && !joinExpressions.isEmpty() ) {
-            builder
-                    .append( " " )
-                    .append( joinExpressions.stream().map( AbstractExpression::build ).collect( Collectors.joining( " " ) ) );
+        private boolean isOf( List<JoinExpression> joinExpressions, List<SetExpression> setExpressions, List<WhereExpression> whereExpressions ) {
+            // lists are immutable, so the same instances mean the same clauses
+            return this.joinExpressions == joinExpressions && this.setExpressions == setExpressions && this.whereExpressions == whereExpressions;
         }
 
-        // set expressions
-        if ( null != setExpressions && !setExpressions.isEmpty() ) {
-            builder
-                    .append( " set " )
-                    .append( setExpressions.stream().map( AbstractExpression::build ).collect( Collectors.joining( ", " ) ) );
+        private QueryShape getShape() {
+            if ( shape == null ) {
+                QueryShape.Builder builder = QueryShape.builder();
+                appendShape( builder, ExpressionType.JOIN, joinExpressions );
+                appendShape( builder, ExpressionType.SET, setExpressions );
+                appendShape( builder, ExpressionType.WHERE, whereExpressions );
+                shape = builder.toShape();
+            }
+            return shape;
         }
 
-        // where expressions
-        if ( null != whereExpressions && !whereExpressions.isEmpty() ) {
-            builder
-                    .append( " where " )
-                    .append( whereExpressions.stream().map( AbstractExpression::build ).collect( Collectors.joining( " and " ) ) );
+        private String getRendered() {
+            if ( rendered == null ) {
+                StringBuilder builder = new StringBuilder( 16 + ( joinExpressions.size() * 3 + setExpressions.size() + whereExpressions.size() * 2 ) * 32 );
+                appendAll( builder, " ", joinExpressions, " ", Collections.emptyMap() );
+                appendAll( builder, " set ", setExpressions, ", ", Collections.emptyMap() );
+                appendAll( builder, " where ", whereExpressions, " and ", Collections.emptyMap() );
+                rendered = builder.toString();
+            }
+            return rendered;
         }
+    }
+
+    private static void appendAll( StringBuilder builder, String prefix, List<? extends AbstractExpression> expressions, String delimiter, Map<String, String> renames ) {
+        if ( expressions.isEmpty() ) return;
 
-        // group by
-        if ( null != groupByExpressions && !groupByExpressions.isEmpty() ) {
-            builder
-                    .append( " group by " )
-                    .append( groupByExpressions.stream().map( AbstractExpression::build ).collect( Collectors.joining( ", " ) ) );
+        builder.append( prefix );
+        for ( int i = 0; i < expressions.size(); i++ ) {
+            if ( i > 0 ) builder.append( delimiter );
+            expressions.get( i ).appendTo( builder, renames );
         }
+    }
 
-        // order
-        if ( null != orderByExpressions && !orderByExpressions.isEmpty() ) {
-            builder
-                    .append( " order by " )
-                    .append( orderByExpressions.stream().map( AbstractExpression::build ).collect( Collectors.joining( ", " ) ) );
+    /**
+     * Get memoized join, set and where clauses. They only change when one of the lists is replaced,
+     * so clones and derived queries that keep the lists reuse the shape and the rendering of the source builder
+     * @return body of this query
+     */
+    private Body body() {
+        Body current = this.body;
+        if ( current == null || !current.isOf( joinExpressions, setExpressions, whereExpressions ) ) {
+            current = new Body( joinExpressions, setExpressions, whereExpressions );
+            this.body = current;
         }
+        return current;
+    }
 
-        return builder.toString().trim();
+    /**
+     * Rough size of rendered query, so that the buffer is not grown while rendering
+     * @return expected length of HQL
+     */
+    private int estimateLength() {
+        int expressions = columns.size() + joinExpressions.size() * 3 + setExpressions.size() + whereExpressions.size() * 2
+                + groupByExpressions.size() + orderByExpressions.size();
+        return 32 + getRootEntityClass().length() + expressions * 32;
     }
 
     /**
      * Remove all column definitions (e.g. for counting)
      */
     public void clearColumns() {
-        columns = null;
+        columns = PersistentList.empty();
     }
 
     public void clearOrder() {
-        orderByExpressions = null;
+        orderByExpressions = PersistentList.empty();
     }
 
     public static HQLBuilder select( Class<?> rootEntityClass, String rootEntityAlias ) {
@@ -323,28 +796,159 @@ public class HQLBuilder implements IBuildable {
         return new HQLBuilder( rootEntityClass, null, BuilderMode.DELETE );
     }
 
+    /**
+     * Copy the builder. Clause lists and variables are shared until one of the builders changes them,
+     * so cloning is cheap and changes of the clone never affect the source (and vice versa)
+     * @param that builder to copy
+     * @return new builder
+     */
     public static HQLBuilder clone( HQLBuilder that ) {
         HQLBuilder builder = new HQLBuilder();
         builder.setMode( that.getMode() );
         builder.setRootEntityClass( that.getRootEntityClass() );
+        builder.rootEntity = that.rootEntity;
         builder.setRootEntityAlias( that.getRootEntityAlias() );
 
-        builder.setColumns( that.getColumns() );
-        builder.setJoinExpressions( that.getJoinExpressions() );
-        builder.setSetExpressions( that.getSetExpressions() );
-        builder.setWhereExpressions( that.getWhereExpressions() );
-        builder.setOrderByExpressions( that.getOrderByExpressions() );
-        builder.setGroupByExpressions( that.getGroupByExpressions() );
-
-        builder.setVariables( that.getVariables() );
+        builder.columns = that.columns;
+        builder.joinExpressions = that.joinExpressions;
+        builder.setExpressions = that.setExpressions;
+        builder.whereExpressions = that.whereExpressions;
+        builder.orderByExpressions = that.orderByExpressions;
+        builder.groupByExpressions = that.groupByExpressions;
+
+        builder.body = that.body;
+        builder.variables = that.variables;
+        builder.subqueries = that.subqueries;
+        builder.setVariables = that.setVariables;
+        builder.setSubqueries = that.setSubqueries;
+        builder.parameterNaming = that.parameterNaming; // copied with the variables, the setter rejects changes once they exist
+        builder.variableCounter = that.variableCounter;
+        builder.setInListPadding( that.isInListPadding() );
+        builder.setInListChunkSize( that.getInListChunkSize() );
+        builder.setPathValidation( that.isPathValidation() );
+        builder.setWhereNormalization( that.isWhereNormalization() );
+        builder.setVariableDeduplication( that.isVariableDeduplication() );
 
         return builder;
     }
 
+    /**
+     * Derive a query selecting the rows this UPDATE or DELETE query changes: {@code select ... from Entity where ...}
+     * with the root entity without alias and the where clause of this query, but no SET clauses and none of their
+     * variables. Columns and order are to be added to the derived query
+     * @return new SELECT query, this builder is not changed
+     * @throws IllegalStateException if this is not an UPDATE or DELETE query, or if it has positional parameters
+     * and SET values, which take positions the derived query wouldn't have
+     */
+    public HQLBuilder toSelectQuery() {
+        if ( getMode() != BuilderMode.UPDATE && getMode() != BuilderMode.DELETE )
+            throw new IllegalStateException( "Only UPDATE and DELETE queries may be turned into select query, got: " + getMode().name() );
+        if ( getParameterNaming().isPositional() && !setVariables.isEmpty() )
+            throw new IllegalStateException( "Query with positional parameters and SET values can't be turned into select query." );
+
+        HQLBuilder select = new HQLBuilder();
+        select.setMode( BuilderMode.SELECT );
+        select.setRootEntityClass( getRootEntityClass() );
+        select.rootEntity = rootEntity;
+        select.whereExpressions = whereExpressions;
+
+        if ( setVariables.isEmpty() ) {
+            select.variables = variables;
+        } else {
+            Map<String, Object> kept = new LinkedHashMap<>( variables.asMap() );
+            kept.keySet().removeAll( setVariables );
+            select.variables = VariableStore.copyOf( kept );
+        }
+        List<SubqueryScope> scopes = new ArrayList<>( subqueries );
+        scopes.removeAll( setSubqueries );
+        select.subqueries = PersistentList.copyOf( scopes );
+
+        select.parameterNaming = parameterNaming;
+        select.variableCounter = variableCounter; // variables added to the derived query don't reuse names of dropped ones
+        select.setInListPadding( isInListPadding() );
+        select.setInListChunkSize( getInListChunkSize() );
+        select.setPathValidation( isPathValidation() );
+        select.setWhereNormalization( isWhereNormalization() );
+        select.setVariableDeduplication( isVariableDeduplication() );
+        return select;
+    }
+
+    /**
+     * Derive a query counting the rows of this SELECT query. Order and columns are dropped; rows are counted
+     * with {@code count(distinct ...)} if joins may duplicate them or if the query selects a distinct column.
+     * Fetch joins become plain joins. Join and where clauses are shared with this builder, including their rendering
+     * @return new count query, this builder is not changed
+     * @throws IllegalStateException if this is not a SELECT query or if it has a GROUP BY clause
+     */
+    public HQLBuilder toCountQuery() {
+        checkDerivable( "count" );
+
+        String countPath = getRootEntityAlias();
+        ColumnExpressionType countType = joinExpressions.isEmpty() ? ColumnExpressionType.COUNT : ColumnExpressionType.COUNT_DISTINCT;
+        for ( ColumnExpression column : columns ) {
+            if ( column.getColumnExpressionType() == ColumnExpressionType.DISTINCT || column.getColumnExpressionType() == ColumnExpressionType.COUNT_DISTINCT ) {
+                if ( columns.size() > 1 )
+                    throw new IllegalStateException( "Can't count query with distinct and other columns, only a single distinct column is supported." );
+                countPath = column.getPath();
+                countType = ColumnExpressionType.COUNT_DISTINCT;
+            }
+        }
+
+        HQLBuilder count = clone( this );
+        count.clearOrder();
+        count.clearColumns();
+        count.dropFetch();
+        return count.column( countPath, countType );
+    }
+
+    /**
+     * Derive a query checking that this SELECT query has any rows: {@code select 1 from ...} without order.
+     * Execute it with max results of 1. Fetch joins become plain joins. Join and where clauses are shared with this builder,
+     * including their rendering
+     * @return new existence query, this builder is not changed
+     * @throws IllegalStateException if this is not a SELECT query or if it has a GROUP BY clause
+     */
+    public HQLBuilder toExistsQuery() {
+        checkDerivable( "exists" );
+
+        HQLBuilder exists = clone( this );
+        exists.clearOrder();
+        exists.clearColumns();
+        exists.dropFetch();
+        return exists.column( "1" );
+    }
+
+    /**
+     * Turn fetch joins into plain joins, keeping their aliases and the rows they filter
+     */
+    private void dropFetch() {
+        if ( !hasFetchJoins() ) return;
+        List<JoinExpression> joins = new ArrayList<>( joinExpressions.size() );
+        for ( JoinExpression join : joinExpressions ) {
+            joins.add( join.withoutFetch() );
+        }
+        joinExpressions = PersistentList.copyOf( joins );
+    }
+
+    private void checkDerivable( String query ) {
+        if ( getMode() != BuilderMode.SELECT )
+            throw new IllegalStateException( "Only SELECT queries may be turned into " + query + " query, got: " + getMode().name() );
+        if ( !groupByExpressions.isEmpty() )
+            throw new IllegalStateException( "Query with GROUP BY can't be turned into " + query + " query." );
+    }
+
+    /**
+     * @deprecated variable names are no longer based on UUID, see {@link ParameterNaming}
+     */
+    @Deprecated
     public String getInternalUUID() {
         return internalUUID;
     }
 
+    /**
+     * @deprecated variable names are no longer based on UUID, see {@link ParameterNaming}
+     */
+    @Deprecated
     public void setInternalUUID( String internalUUID ) {
         this.internalUUID = internalUUID;
     }
@@ -355,6 +959,14 @@ public class HQLBuilder implements IBuildable {
 
     public void setRootEntityClass( String rootEntityClass ) {
         this.rootEntityClass = rootEntityClass;
+        this.rootEntity = null;
+    }
+
+    /**
+     * @return metadata of the root entity, {@code null} if the builder was set up with {@link #setRootEntityClass(String)}
+     */
+    public EntityMetadata getRootEntity() {
+        return rootEntity;
     }
 
     public String getRootEntityAlias() {
@@ -373,59 +985,264 @@ public class HQLBuilder implements IBuildable {
         this.mode = mode;
     }
 
+    /**
+     * Clause lists are returned as modifiable views: changes made through them replace the list of this builder,
+     * but never affect clones sharing it
+     * @return columns of the query
+     */
     public List<ColumnExpression> getColumns() {
-        return columns;
+        return new ClauseView<>( () -> columns, list -> columns = list );
     }
 
     public void setColumns( List<ColumnExpression> columns ) {
-        this.columns = columns;
+        this.columns = PersistentList.copyOf( columns );
     }
 
     public List<JoinExpression> getJoinExpressions() {
-        return joinExpressions;
+        return new ClauseView<>( () -> joinExpressions, list -> joinExpressions = list );
     }
 
     public void setJoinExpressions( List<JoinExpression> joinExpressions ) {
-        this.joinExpressions = joinExpressions;
+        this.joinExpressions = PersistentList.copyOf( joinExpressions );
     }
 
     public List<SetExpression> getSetExpressions() {
-        return setExpressions;
+        return new ClauseView<>( () -> setExpressions, list -> setExpressions = list );
     }
 
     public void setSetExpressions( List<SetExpression> setExpressions ) {
-        this.setExpressions = setExpressions;
+        this.setExpressions = PersistentList.copyOf( setExpressions );
     }
 
     public List<WhereExpression> getWhereExpressions() {
-        return whereExpressions;
+        return new ClauseView<>( () -> whereExpressions, list -> whereExpressions = list );
     }
 
     public void setWhereExpressions( List<WhereExpression> whereExpressions ) {
-        this.whereExpressions = whereExpressions;
+        this.whereExpressions = PersistentList.copyOf( whereExpressions );
     }
 
     public List<OrderByExpression> getOrderByExpressions() {
-        return orderByExpressions;
+        return new ClauseView<>( () -> orderByExpressions, list -> orderByExpressions = list );
     }
 
     public void setOrderByExpressions( List<OrderByExpression> orderByExpressions ) {
-        this.orderByExpressions = orderByExpressions;
+        this.orderByExpressions = PersistentList.copyOf( orderByExpressions );
     }
 
     public List<GroupByExpression> getGroupByExpressions() {
-        return groupByExpressions;
+        return new ClauseView<>( () -> groupByExpressions, list -> groupByExpressions = list );
     }
 
     public void setGroupByExpressions( List<GroupByExpression> groupByExpressions ) {
-        this.groupByExpressions = groupByExpressions;
+        this.groupByExpressions = PersistentList.copyOf( groupByExpressions );
+    }
+
+    public ParameterNaming getParameterNaming() {
+        return parameterNaming;
+    }
+
+    /**
+     * Set naming of generated variables. Must be set before any variable or parameter is added
+     * @param parameterNaming naming strategy
+     * @throws IllegalStateException if the builder already has variables or parameters
+     */
+    public void setParameterNaming( ParameterNaming parameterNaming ) {
+        if ( null == parameterNaming ) throw new IllegalArgumentException( "ParameterNaming may not be null." );
+        // parameters don't advance the counter, but take variable slots
+        if ( ( variableCounter > 0 || variables.size() > 0 ) && parameterNaming != this.parameterNaming )
+            throw new IllegalStateException( "ParameterNaming can't be changed after variables were added." );
+        this.parameterNaming = parameterNaming;
+    }
+
+    public static ParameterNaming getDefaultParameterNaming() {
+        return defaultParameterNaming;
+    }
+
+    /**
+     * Set naming of generated variables for all builders created afterwards
+     * @param parameterNaming naming strategy
+     */
+    public static void setDefaultParameterNaming( ParameterNaming parameterNaming ) {
+        if ( null == parameterNaming ) throw new IllegalArgumentException( "ParameterNaming may not be null." );
+        defaultParameterNaming = parameterNaming;
+    }
+
+    public boolean isInListPadding() {
+        return inListPadding;
+    }
+
+    /**
+     * Pad collections of {@code in} and {@code not in} expressions to the next power of two by repeating the last value,
+     * so that the number of distinct SQL statements grows logarithmically with list size.
+     * Applies to expressions added afterwards
+     * @param inListPadding pad collections
+     */
+    public void setInListPadding( boolean inListPadding ) {
+        this.inListPadding = inListPadding;
     }
 
+    public int getInListChunkSize() {
+        return inListChunkSize;
+    }
+
+    /**
+     * Split collections of {@code in} and {@code not in} expressions that are larger than the given size into several
+     * lists: {@code (x in (:a) or x in (:b))} and {@code (x not in (:a) and x not in (:b))}. Padding never exceeds
+     * this size. Applies to expressions added afterwards
+     * @param inListChunkSize maximum number of values in one list, {@code 0} to disable
+     */
+    public void setInListChunkSize( int inListChunkSize ) {
+        if ( inListChunkSize < 0 ) throw new IllegalArgumentException( "Chunk size may not be negative." );
+        this.inListChunkSize = inListChunkSize;
+    }
+
+    public static boolean isDefaultInListPadding() {
+        return defaultInListPadding;
+    }
+
+    /**
+     * Set {@link #setInListPadding(boolean)} for all builders created afterwards
+     * @param inListPadding pad collections
+     */
+    public static void setDefaultInListPadding( boolean inListPadding ) {
+        defaultInListPadding = inListPadding;
+    }
+
+    public static int getDefaultInListChunkSize() {
+        return defaultInListChunkSize;
+    }
+
+    /**
+     * Set {@link #setInListChunkSize(int)} for all builders created afterwards
+     * @param inListChunkSize maximum number of values in one list, {@code 0} to disable
+     */
+    public static void setDefaultInListChunkSize( int inListChunkSize ) {
+        if ( inListChunkSize < 0 ) throw new IllegalArgumentException( "Chunk size may not be negative." );
+        defaultInListChunkSize = inListChunkSize;
+    }
+
+    public boolean isPathValidation() {
+        return pathValidation;
+    }
+
+    /**
+     * Check property paths against the entity model when the query is built, see {@link #validatePaths()}.
+     * With {@link QueryCache} enabled paths are only checked on the first build of each query shape
+     * @param pathValidation check paths
+     */
+    public void setPathValidation( boolean pathValidation ) {
+        this.pathValidation = pathValidation;
+    }
+
+    public static boolean isDefaultPathValidation() {
+        return defaultPathValidation;
+    }
+
+    /**
+     * Set {@link #setPathValidation(boolean)} for all builders created afterwards
+     * @param pathValidation check paths
+     */
+    public static void setDefaultPathValidation( boolean pathValidation ) {
+        defaultPathValidation = pathValidation;
+    }
+
+    public boolean isWhereNormalization() {
+        return whereNormalization;
+    }
+
+    /**
+     * Simplify where clauses added afterwards, see {@link WhereNormalizer}: nested groups are flattened, repeated
+     * predicates dropped, equalities of one property under {@code or} merged into {@code in} and predicates sorted,
+     * so that filters assembled in different ways share one query shape
+     * @param whereNormalization simplify where clauses
+     */
+    public void setWhereNormalization( boolean whereNormalization ) {
+        this.whereNormalization = whereNormalization;
+    }
+
+    public static boolean isDefaultWhereNormalization() {
+        return defaultWhereNormalization;
+    }
+
+    /**
+     * Set {@link #setWhereNormalization(boolean)} for all builders created afterwards
+     * @param whereNormalization simplify where clauses
+     */
+    public static void setDefaultWhereNormalization( boolean whereNormalization ) {
+        defaultWhereNormalization = whereNormalization;
+    }
+
+    public boolean isVariableDeduplication() {
+        return variableDeduplication;
+    }
+
+    /**
+     * Bind equal values added afterwards once: a variable is reused for the same object or an equal immutable value
+     * (strings, numbers, dates, enums, ...), which reduces the number of JDBC binds. The query then also depends
+     * on which values are equal, so a filter may render into more distinct queries; keep it off for queries
+     * that are built with varying values
+     * @param variableDeduplication reuse variables of equal values
+     */
+    public void setVariableDeduplication( boolean variableDeduplication ) {
+        this.variableDeduplication = variableDeduplication;
+    }
+
+    public static boolean isDefaultVariableDeduplication() {
+        return defaultVariableDeduplication;
+    }
+
+    /**
+     * Set {@link #setVariableDeduplication(boolean)} for all builders created afterwards
+     * @param variableDeduplication reuse variables of equal values
+     */
+    public static void setDefaultVariableDeduplication( boolean variableDeduplication ) {
+        defaultVariableDeduplication = variableDeduplication;
+    }
+
+    /**
+     * @return read-only view of the variables of this query, including variables of its subqueries
+     */
     public Map<String, Object> getVariables() {
-        return variables;
+        if ( subqueries.isEmpty() ) return variables.asMap();
+
+        Map<String, Object> all = new LinkedHashMap<>( variables.asMap() );
+        for ( SubqueryScope scope : subqueries ) {
+            for ( Map.Entry<String, Object> variable : scope.query.getVariables().entrySet() ) {
+                all.put( scope.renames.getOrDefault( variable.getKey(), variable.getKey() ), variable.getValue() );
+            }
+        }
+        return Collections.unmodifiableMap( all );
     }
 
+    /**
+     * @return values of the variables of this query in the order they were added, i.e. the value of {@code ?n}
+     * is at {@code n - 1} for {@link ParameterNaming#POSITIONAL}, which queries with named parameters can't use
+     */
+    public Object[] getVariableValues() {
+        return subqueries.isEmpty() ? variables.toValueArray() : getVariables().values().toArray();
+    }
+
+    /**
+     * Replace variables of this query. The given map is copied and never modified
+     * @param variables new variables
+     */
     public void setVariables( Map<String, Object> variables ) {
-        this.variables = variables;
+        this.variables = VariableStore.copyOf( variables );
+    }
+
+    /**
+     * Subquery with the names its variables have in the outer query
+     */
+    private static final class SubqueryScope {
+        private final HQLBuilder query;
+        private final Map<String, String> renames;
+        private final Map<String, String> names; // name in the outer query -> name in the subquery
+
+        private SubqueryScope( HQLBuilder query, Map<String, String> renames, Map<String, String> names ) {
+            this.query = query;
+            this.renames = renames;
+            this.names = names;
+        }
     }
 }
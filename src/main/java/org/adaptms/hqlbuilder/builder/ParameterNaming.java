@@ -0,0 +1,66 @@
+package org.adaptms.hqlbuilder.builder;
+
+/**
+ * Strategy of naming generated query variables. Names must only depend on the scope and the index of the variable,
+ * so that the same query always renders into the same HQL.
+ *
+ * @author ppolyakov at 17.10.2026 22:15
+ */
+public interface ParameterNaming {
+
+    /**
+     * Named parameters {@code :var_<scope><index>}, e.g. {@code :var_te0}. Scope is the alias of the builder,
+     * or the query mode for UPDATE and DELETE queries
+     */
+    ParameterNaming NAMED = new ParameterNaming() {
+        @Override
+        public String name( String scope, int index ) {
+            return "var_" + scope + index;
+        }
+
+        @Override
+        public String reference( String name ) {
+            return ":" + name;
+        }
+    };
+
+    /**
+     * JPA positional parameters {@code ?1}, {@code ?2}, ... Variable names are the positions,
+     * bind them with {@code Query#setParameter( int, Object )}
+     */
+    ParameterNaming POSITIONAL = new ParameterNaming() {
+        @Override
+        public String name( String scope, int index ) {
+            return Integer.toString( index + 1 );
+        }
+
+        @Override
+        public String reference( String name ) {
+            return "?" + name;
+        }
+
+        @Override
+        public boolean isPositional() {
+            return true;
+        }
+    };
+
+    /**
+     * Generate variable name
+     * @param scope scope of the builder the variable belongs to
+     * @param index index of the variable in the builder, starting with 0
+     * @return variable name, as it is stored in the builder's variables
+     */
+    String name( String scope, int index );
+
+    /**
+     * Reference to the variable in the query
+     * @param name variable name
+     * @return reference to put in HQL
+     */
+    String reference( String name );
+
+    default boolean isPositional() {
+        return false;
+    }
+}
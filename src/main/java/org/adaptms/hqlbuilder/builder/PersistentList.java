@@ -0,0 +1,74 @@
+package org.adaptms.hqlbuilder.builder;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable append-only list that shares its backing array between versions.
+ * <p>
+ * {@link #plus(Object)} writes into the shared array in place if no other version has used that slot yet,
+ * otherwise it copies. So a list and all lists derived from it by cloning a builder cost nothing until they diverge,
+ * and appending to one of them is never visible in the others.
+ *
+ * @author ppolyakov at 17.10.2026 22:50
+ */
+final class PersistentList<E> extends AbstractList<E> implements RandomAccess {
+
+    private static final PersistentList<Object> EMPTY = new PersistentList<>( new Object[ 0 ], 0, new AtomicInteger() );
+
+    private final Object[] elements;
+    private final int size;
+    private final AtomicInteger used; // number of slots of elements taken by any version
+
+    private PersistentList( Object[] elements, int size, AtomicInteger used ) {
+        this.elements = elements;
+        this.size = size;
+        this.used = used;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    static <E> PersistentList<E> empty() {
+        return ( PersistentList<E> ) EMPTY;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    static <E> PersistentList<E> copyOf( Collection<? extends E> elements ) {
+        if ( elements == null || elements.isEmpty() ) return empty();
+        if ( elements instanceof PersistentList ) return ( PersistentList<E> ) elements;
+        if ( elements instanceof ClauseView ) return ( ( ClauseView<E> ) elements ).current();
+
+        Object[] array = elements.toArray();
+        return new PersistentList<>( array, array.length, new AtomicInteger( array.length ) );
+    }
+
+    /**
+     * Append element
+     * @param element element to append
+     * @return new version of the list, this one is not changed
+     */
+    PersistentList<E> plus( E element ) {
+        if ( size < elements.length && used.compareAndSet( size, size + 1 ) ) {
+            elements[size] = element;
+            return new PersistentList<>( elements, size + 1, used );
+        }
+
+        Object[] copy = Arrays.copyOf( elements, Math.max( 4, size * 2 ) );
+        copy[size] = element;
+        return new PersistentList<>( copy, size + 1, new AtomicInteger( size + 1 ) );
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public E get( int index ) {
+        if ( index >= size ) throw new IndexOutOfBoundsException( "Index: " + index + ", size: " + size );
+        return ( E ) elements[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,130 @@
+package org.adaptms.hqlbuilder.builder;
+
+import org.adaptms.hqlbuilder.expression.Parameter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query rendered once with {@link HQLBuilder#prepare()}, with values bound per call.
+ * <p>
+ * Holds the HQL string, the values that were given when the query was defined and the {@link Parameter} slots
+ * that are filled by {@link #bind(Object...)} or {@link #bind(Map)}. Instances are immutable and may be shared
+ * between threads. Every variable of the HQL is in the bound map, {@code null} values included.
+ *
+ * @author ppolyakov at 17.10.2026 21:50
+ */
+public final class PreparedHql {
+
+    private final String hql;
+    private final String[] names; // all variables of the query
+    private final Object[] values; // values given on definition, null for parameter slots and null values
+    private final Parameter[] parameters; // slots in order of declaration
+    private final int[] parameterIndexes; // position of each slot in names
+
+    PreparedHql( String hql, Map<String, Object> variables ) {
+        this.hql = hql;
+        this.names = new String[ variables.size() ];
+        this.values = new Object[ variables.size() ];
+
+        List<Parameter> parameters = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        int i = 0;
+        for ( Map.Entry<String, Object> variable : variables.entrySet() ) {
+            names[i] = variable.getKey();
+            if ( variable.getValue() instanceof Parameter ) {
+                parameters.add( ( Parameter ) variable.getValue() );
+                indexes.add( i );
+            } else {
+                values[i] = variable.getValue();
+            }
+            i++;
+        }
+
+        this.parameters = parameters.toArray( new Parameter[ 0 ] );
+        this.parameterIndexes = new int[ indexes.size() ];
+        for ( int j = 0; j < parameterIndexes.length; j++ ) {
+            parameterIndexes[j] = indexes.get( j );
+        }
+    }
+
+    /**
+     * Bind values to parameters in order of their declaration
+     * @param values parameter values
+     * @return map of all query variables
+     * @throws IllegalArgumentException if number of values doesn't match the number of parameters
+     */
+    public Map<String, Object> bind( Object... values ) {
+        if ( values.length != parameters.length )
+            throw new IllegalArgumentException( "Wrong number of parameter values, expected: " + parameters.length + ", got: " + values.length );
+
+        Map<String, Object> variables = newVariables();
+        for ( int i = 0; i < parameters.length; i++ ) {
+            variables.put( names[ parameterIndexes[i] ], checkValue( parameters[i], values[i] ) );
+        }
+        return variables;
+    }
+
+    /**
+     * Bind values to parameters by name
+     * @param values parameter values by parameter name
+     * @return map of all query variables
+     * @throws IllegalArgumentException if a parameter has no value
+     */
+    public Map<String, Object> bind( Map<String, ?> values ) {
+        Map<String, Object> variables = newVariables();
+        for ( int i = 0; i < parameters.length; i++ ) {
+            String name = parameters[i].getName();
+            if ( !values.containsKey( name ) ) throw new IllegalArgumentException( "No value for parameter \"" + name + "\"." );
+            variables.put( names[ parameterIndexes[i] ], checkValue( parameters[i], values.get( name ) ) );
+        }
+        return variables;
+    }
+
+    /**
+     * @return all variables with the values given on definition, parameter slots are overwritten by the caller
+     */
+    private Map<String, Object> newVariables() {
+        Map<String, Object> variables = new HashMap<>( names.length * 4 / 3 + 1 );
+        for ( int i = 0; i < names.length; i++ ) {
+            // null values are bound explicitly, skipping them would leave variables of the HQL unbound
+            variables.put( names[i], values[i] );
+        }
+        return variables;
+    }
+
+    private static Object checkValue( Parameter parameter, Object value ) {
+        if ( parameter.isCollection() && value != null && !( value instanceof Collection ) && !value.getClass().isArray() )
+            throw new IllegalArgumentException( "Parameter \"" + parameter.getName() + "\" expects a collection, got: " + value.getClass().getName() );
+        return value;
+    }
+
+    public String getHql() {
+        return hql;
+    }
+
+    /**
+     * @return {@code true} if values were given when the query was defined, i.e. the query can't be run
+     * with the values of its parameters alone
+     */
+    public boolean hasValues() {
+        return names.length > parameters.length;
+    }
+
+    /**
+     * @return parameter slots in order of declaration
+     */
+    public List<Parameter> getParameters() {
+        return Collections.unmodifiableList( Arrays.asList( parameters ) );
+    }
+
+    @Override
+    public String toString() {
+        return hql;
+    }
+}
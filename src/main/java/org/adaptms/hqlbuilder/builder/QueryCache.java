@@ -0,0 +1,126 @@
+package org.adaptms.hqlbuilder.builder;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide cache of rendered HQL strings keyed by {@link QueryShape}.
+ * <p>
+ * The cache is bounded: once {@link #getMaxSize()} shapes are stored, a new shape replaces an old one chosen by
+ * the clock (second chance) algorithm. Shapes read since the clock hand last passed them are skipped once,
+ * so a burst of unique queries pushes out other rarely used shapes rather than the hot ones. Reads only set a flag.
+ *
+ * @author ppolyakov at 17.10.2026 20:20
+ */
+public final class QueryCache {
+    public static final int DEFAULT_MAX_SIZE = 2048;
+
+    private static final ConcurrentMap<QueryShape, Entry> CACHE = new ConcurrentHashMap<>();
+    private static final LongAdder EVICTIONS = new LongAdder();
+
+    private static volatile boolean enabled = true;
+    private static volatile int maxSize = DEFAULT_MAX_SIZE;
+
+    // clock hand, guarded by the class lock
+    private static Iterator<Map.Entry<QueryShape, Entry>> hand;
+
+    private QueryCache() {
+    }
+
+    /**
+     * Get already rendered HQL for the shape
+     * @param shape query shape
+     * @return rendered HQL or {@code null} if shape is not cached
+     */
+    public static String get( QueryShape shape ) {
+        Entry entry = CACHE.get( shape );
+        if ( entry == null ) return null;
+        // written only when it changes, so hot entries don't make every read a write
+        if ( !entry.referenced ) entry.referenced = true;
+        return entry.hql;
+    }
+
+    /**
+     * Store rendered HQL for the shape, evicting another shape if the cache is full
+     * @param shape query shape
+     * @param hql rendered query
+     * @return HQL instance that is stored for this shape (may be the one stored concurrently by another thread)
+     */
+    public static String put( QueryShape shape, String hql ) {
+        if ( maxSize == 0 ) return hql;
+        if ( CACHE.size() >= maxSize ) evict();
+        Entry previous = CACHE.putIfAbsent( shape, new Entry( hql ) );
+        return previous != null ? previous.hql : hql;
+    }
+
+    /**
+     * Advance the clock hand until the cache has room for one more shape
+     */
+    private static synchronized void evict() {
+        // every entry gets at most one second chance per call, so the sweep ends even under concurrent reads
+        int chances = CACHE.size();
+        while ( CACHE.size() >= maxSize && !CACHE.isEmpty() ) {
+            if ( hand == null || !hand.hasNext() ) hand = CACHE.entrySet().iterator();
+            if ( !hand.hasNext() ) return;
+
+            Map.Entry<QueryShape, Entry> candidate = hand.next();
+            Entry entry = candidate.getValue();
+            if ( entry.referenced && chances-- > 0 ) {
+                entry.referenced = false;
+            } else if ( CACHE.remove( candidate.getKey(), entry ) ) {
+                EVICTIONS.increment();
+            }
+        }
+    }
+
+    /**
+     * Remove all cached queries
+     */
+    public static void clear() {
+        synchronized ( QueryCache.class ) {
+            CACHE.clear();
+            hand = null;
+        }
+    }
+
+    public static int size() {
+        return CACHE.size();
+    }
+
+    /**
+     * @return number of shapes removed to make room for new ones since start
+     */
+    public static long getEvictions() {
+        return EVICTIONS.sum();
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled( boolean enabled ) {
+        QueryCache.enabled = enabled;
+        if ( !enabled ) clear();
+    }
+
+    public static int getMaxSize() {
+        return maxSize;
+    }
+
+    public static void setMaxSize( int maxSize ) {
+        if ( maxSize < 0 ) throw new IllegalArgumentException( "Cache size may not be negative." );
+        QueryCache.maxSize = maxSize;
+    }
+
+    private static final class Entry {
+        private final String hql;
+        private volatile boolean referenced;
+
+        private Entry( String hql ) {
+            this.hql = hql;
+        }
+    }
+}
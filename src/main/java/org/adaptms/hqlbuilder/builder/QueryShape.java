@@ -0,0 +1,76 @@
+package org.adaptms.hqlbuilder.builder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Structural fingerprint of a query: mode, root entity, columns, joins, where tree, grouping and order.
+ * Bound values are not part of the shape, so two builders that differ only in variable values have equal shapes
+ * and render into the same HQL string.
+ *
+ * @author ppolyakov at 17.10.2026 20:20
+ */
+public final class QueryShape {
+
+    private final Object[] tokens;
+    private final int hash;
+
+    private QueryShape( Object[] tokens ) {
+        this.tokens = tokens;
+        this.hash = Arrays.hashCode( tokens );
+    }
+
+    /**
+     * Collect the shape of the given builder
+     * @param builder builder to describe
+     * @return shape of the builder
+     */
+    public static QueryShape of( HQLBuilder builder ) {
+        Builder shape = new Builder();
+        builder.appendShape( shape );
+        return shape.toShape();
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public boolean equals( Object o ) {
+        if ( this == o ) return true;
+        if ( !( o instanceof QueryShape ) ) return false;
+        QueryShape that = ( QueryShape ) o;
+        return hash == that.hash && Arrays.equals( tokens, that.tokens );
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryShape" + Arrays.toString( tokens );
+    }
+
+    /**
+     * Accumulates structural tokens. Tokens must be immutable and have value-based {@code equals} and {@code hashCode}
+     * (strings, enums, numbers or nested shapes).
+     */
+    public static final class Builder {
+        private final List<Object> tokens = new ArrayList<>( 32 );
+
+        private Builder() {
+        }
+
+        public Builder add( Object token ) {
+            tokens.add( token );
+            return this;
+        }
+
+        QueryShape toShape() {
+            return new QueryShape( tokens.toArray() );
+        }
+    }
+}
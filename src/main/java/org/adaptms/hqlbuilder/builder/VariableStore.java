@@ -0,0 +1,181 @@
+package org.adaptms.hqlbuilder.builder;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.temporal.TemporalAccessor;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable append-only store of query variables: names and values in two parallel arrays, in the order they were added.
+ * <p>
+ * Like {@link PersistentList}, versions share the arrays and {@link #plus(String, Object)} writes in place
+ * if no other version has used the slot yet, so clones of a builder never copy their variables.
+ * Lookups by name scan the names, which is faster than hashing for the few variables a query has.
+ *
+ * @author ppolyakov at 18.10.2026 16:20
+ */
+final class VariableStore {
+
+    private static final VariableStore EMPTY = new VariableStore( new String[ 0 ], new Object[ 0 ], 0, new AtomicInteger() );
+
+    private final String[] names;
+    private final Object[] values;
+    private final int size;
+    private final AtomicInteger used; // number of slots of the arrays taken by any version
+    private Map<String, Object> view;
+
+    private VariableStore( String[] names, Object[] values, int size, AtomicInteger used ) {
+        this.names = names;
+        this.values = values;
+        this.size = size;
+        this.used = used;
+    }
+
+    static VariableStore empty() {
+        return EMPTY;
+    }
+
+    static VariableStore copyOf( Map<String, ?> variables ) {
+        if ( variables == null || variables.isEmpty() ) return EMPTY;
+
+        String[] names = new String[ variables.size() ];
+        Object[] values = new Object[ variables.size() ];
+        int i = 0;
+        for ( Map.Entry<String, ?> variable : variables.entrySet() ) {
+            names[i] = variable.getKey();
+            values[i++] = variable.getValue();
+        }
+        return new VariableStore( names, values, i, new AtomicInteger( i ) );
+    }
+
+    /**
+     * Append variable, the name must not be in the store yet
+     * @param name variable name
+     * @param value variable value
+     * @return new version of the store, this one is not changed
+     */
+    VariableStore plus( String name, Object value ) {
+        if ( size < names.length && used.compareAndSet( size, size + 1 ) ) {
+            names[size] = name;
+            values[size] = value;
+            return new VariableStore( names, values, size + 1, used );
+        }
+
+        int capacity = Math.max( 4, size * 2 );
+        String[] namesCopy = Arrays.copyOf( names, capacity );
+        Object[] valuesCopy = Arrays.copyOf( values, capacity );
+        namesCopy[size] = name;
+        valuesCopy[size] = value;
+        return new VariableStore( namesCopy, valuesCopy, size + 1, new AtomicInteger( size + 1 ) );
+    }
+
+    int indexOf( String name ) {
+        for ( int i = 0; i < size; i++ ) {
+            if ( names[i].equals( name ) ) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @param value variable value
+     * @return index of the first variable holding the same value, if it may be shared, {@code -1} otherwise
+     */
+    int indexOfShareable( Object value ) {
+        boolean immutable = isImmutable( value );
+        for ( int i = 0; i < size; i++ ) {
+            if ( values[i] == value || immutable && value.equals( values[i] ) ) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Values are shared only if they are the same object or equal immutable values, so that binding one of them
+     * can't differ from binding the other. Mutable objects, e.g. collections, are only shared by identity
+     */
+    private static boolean isImmutable( Object value ) {
+        return value instanceof String || value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte || value instanceof Double || value instanceof Float || value instanceof BigDecimal
+                || value instanceof BigInteger || value instanceof Boolean || value instanceof Character || value instanceof Enum
+                || value instanceof UUID || value instanceof TemporalAccessor && value.getClass().getName().startsWith( "java.time." );
+    }
+
+    String nameAt( int index ) {
+        return names[index];
+    }
+
+    Object valueAt( int index ) {
+        return values[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    Object[] toValueArray() {
+        return Arrays.copyOf( values, size );
+    }
+
+    /**
+     * @return read-only map view in the order of the variables
+     */
+    Map<String, Object> asMap() {
+        if ( view == null ) view = new View();
+        return view;
+    }
+
+    private final class View extends AbstractMap<String, Object> {
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean containsKey( Object key ) {
+            return key instanceof String && indexOf( ( String ) key ) >= 0;
+        }
+
+        @Override
+        public Object get( Object key ) {
+            int index = key instanceof String ? indexOf( ( String ) key ) : -1;
+            return index >= 0 ? values[index] : null;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<Entry<String, Object>>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < size;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if ( next >= size ) throw new NoSuchElementException();
+                            int index = next++;
+                            return new SimpleImmutableEntry<>( names[index], values[index] );
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package org.adaptms.hqlbuilder.expression;
 
 import org.adaptms.hqlbuilder.IBuildable;
+import org.adaptms.hqlbuilder.builder.QueryShape;
+import org.adaptms.hqlbuilder.metadata.PathValidator;
+
+import java.util.Map;
 
 /**
  * Parent for all expressions
@@ -25,6 +29,47 @@ public abstract class AbstractExpression implements IBuildable {
             throw new IllegalArgumentException( "Wrong number of arguments, expected: " + getType().getNumberOfArguments() + ", got: " + args.length );
     }
 
+    /**
+     * Render this expression into the buffer
+     * @param builder buffer to append to
+     */
+    @Override
+    public abstract void appendTo( StringBuilder builder );
+
+    /**
+     * Render this expression with variables renamed, for subqueries whose variables have other names in the outer query.
+     * Default implementation ignores the names, expressions with variables override it
+     * @param builder buffer to append to
+     * @param renames new names of variables by their names in this expression, may be empty
+     */
+    public void appendTo( StringBuilder builder, Map<String, String> renames ) {
+        appendTo( builder );
+    }
+
+    @Override
+    public String build() {
+        StringBuilder builder = new StringBuilder();
+        appendTo( builder );
+        return builder.toString();
+    }
+
+    /**
+     * Append structural description of this expression to the query shape. Bound values must not be included.
+     * Default implementation uses the rendered expression, override it to avoid rendering.
+     * @param shape shape to append to
+     */
+    public void appendShape( QueryShape.Builder shape ) {
+        shape.add( getType() ).add( build() );
+    }
+
+    /**
+     * Check property paths of this expression against the entity model, see {@link org.adaptms.hqlbuilder.builder.HQLBuilder#validatePaths()}.
+     * Default implementation checks nothing
+     * @param validator validator of the query the expression belongs to
+     */
+    public void validatePaths( PathValidator validator ) {
+    }
+
     public ExpressionType getType() {
         return type;
     }
@@ -33,10 +33,12 @@ public enum ExpressionType {
 
     private final int numberOfArguments;
     private final String template;
+    private final Template compiledTemplate;
 
     ExpressionType( int numberOfArguments, String template ) {
         this.numberOfArguments = numberOfArguments;
         this.template = template;
+        this.compiledTemplate = Template.compile( template );
     }
 
     public int getNumberOfArguments() {
@@ -46,4 +48,8 @@ public enum ExpressionType {
     public String getTemplate() {
         return template;
     }
+
+    public Template getCompiledTemplate() {
+        return compiledTemplate;
+    }
 }
@@ -77,6 +77,24 @@ public interface Expressions {
         return new CommonWhereExpression( ExpressionType.BETWEEN, first, second, third );
     }
 
+    /**
+     * Named placeholder for a single value that is bound later
+     * @param name parameter name
+     * @return parameter placeholder
+     */
+    static Parameter param( String name ) {
+        return new Parameter( name, false );
+    }
+
+    /**
+     * Named placeholder for a collection that is bound later (e.g. for {@code in})
+     * @param name parameter name
+     * @return parameter placeholder
+     */
+    static Parameter listParam( String name ) {
+        return new Parameter( name, true );
+    }
+
     /**
      * Wrap string with "%" for like for both sides
      * @param input source string to wrap
@@ -0,0 +1,51 @@
+package org.adaptms.hqlbuilder.expression;
+
+/**
+ * Named placeholder for a value that is bound later, see {@link org.adaptms.hqlbuilder.builder.PreparedHql}.
+ * Use it in expressions instead of a value: {@code Expressions.eq( path, Expressions.param( "status" ) )}.
+ *
+ * @author ppolyakov at 17.10.2026 21:50
+ */
+public final class Parameter {
+
+    private final String name;
+    private final boolean collection;
+
+    public Parameter( String name, boolean collection ) {
+        if ( null == name || name.isEmpty() ) throw new IllegalArgumentException( "Parameter name may not be empty." );
+        if ( !Character.isJavaIdentifierStart( name.charAt( 0 ) ) )
+            throw new IllegalArgumentException( "Parameter name must be a valid identifier, got: " + name );
+
+        this.name = name;
+        this.collection = collection;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return {@code true} if a collection will be bound, e.g. for {@code in} expression
+     */
+    public boolean isCollection() {
+        return collection;
+    }
+
+    @Override
+    public boolean equals( Object o ) {
+        if ( this == o ) return true;
+        if ( !( o instanceof Parameter ) ) return false;
+        Parameter that = ( Parameter ) o;
+        return collection == that.collection && name.equals( that.name );
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode() * 31 + ( collection ? 1 : 0 );
+    }
+
+    @Override
+    public String toString() {
+        return ":" + name;
+    }
+}
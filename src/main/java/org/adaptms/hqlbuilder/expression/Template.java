@@ -0,0 +1,129 @@
+package org.adaptms.hqlbuilder.expression;
+
+import org.adaptms.hqlbuilder.IBuildable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Query template compiled into literal segments and argument indexes, e.g. {@code "({0} between {1} and {2})"}.
+ * Only {@code {n}} placeholders are supported, there is no quoting and no formatting of arguments.
+ * Arguments are appended as is, {@link IBuildable} arguments are rendered into the same buffer.
+ *
+ * @author ppolyakov at 17.10.2026 21:05
+ */
+public final class Template {
+
+    private final String pattern;
+    private final String[] literals; // literals[i] goes before arguments[i], the last one closes the template
+    private final int[] arguments;
+    private final int argumentCount; // highest placeholder index + 1
+
+    private Template( String pattern, String[] literals, int[] arguments ) {
+        this.pattern = pattern;
+        this.literals = literals;
+        this.arguments = arguments;
+        int count = 0;
+        for ( int index : arguments ) count = Math.max( count, index + 1 );
+        this.argumentCount = count;
+    }
+
+    /**
+     * Compile template pattern
+     * @param pattern pattern with {@code {n}} placeholders
+     * @return compiled template
+     * @throws IllegalArgumentException if placeholder is malformed or negative
+     */
+    public static Template compile( String pattern ) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> arguments = new ArrayList<>();
+
+        int start = 0;
+        int open;
+        while ( ( open = pattern.indexOf( '{', start ) ) >= 0 ) {
+            int close = pattern.indexOf( '}', open );
+            if ( close < 0 ) throw new IllegalArgumentException( "Unclosed placeholder in template \"" + pattern + "\"." );
+            int index;
+            try {
+                index = Integer.parseInt( pattern.substring( open + 1, close ) );
+            } catch ( NumberFormatException nfe ) {
+                index = -1;
+            }
+            if ( index < 0 ) throw new IllegalArgumentException( "Wrong placeholder in template \"" + pattern + "\": " + pattern.substring( open, close + 1 ) );
+            arguments.add( index );
+            literals.add( pattern.substring( start, open ) );
+            start = close + 1;
+        }
+        literals.add( pattern.substring( start ) );
+
+        int[] indexes = new int[ arguments.size() ];
+        for ( int i = 0; i < indexes.length; i++ ) {
+            indexes[i] = arguments.get( i );
+        }
+        return new Template( pattern, literals.toArray( new String[ 0 ] ), indexes );
+    }
+
+    /**
+     * Render template with one argument
+     * @param builder buffer to append to
+     * @param first argument {@code {0}}
+     * @throws IllegalArgumentException if the template has other placeholders
+     */
+    public void appendTo( StringBuilder builder, Object first ) {
+        appendTo( builder, first, null, null, 1 );
+    }
+
+    /**
+     * Render template with two arguments
+     * @param builder buffer to append to
+     * @param first argument {@code {0}}
+     * @param second argument {@code {1}}
+     * @throws IllegalArgumentException if the template has other placeholders
+     */
+    public void appendTo( StringBuilder builder, Object first, Object second ) {
+        appendTo( builder, first, second, null, 2 );
+    }
+
+    /**
+     * Render template with any number of arguments
+     * @param builder buffer to append to
+     * @param arguments template arguments
+     * @throws IllegalArgumentException if there are fewer arguments than the placeholders need
+     */
+    public void appendTo( StringBuilder builder, Object[] arguments ) {
+        appendTo( builder, null, null, arguments, arguments.length );
+    }
+
+    private void appendTo( StringBuilder builder, Object first, Object second, Object[] all, int count ) {
+        // checked before anything is appended, so a wrong call leaves the buffer as it was
+        if ( argumentCount > count )
+            throw new IllegalArgumentException( "Template \"" + pattern + "\" needs argument {" + ( argumentCount - 1 ) + "}, got " + count + " arguments." );
+
+        for ( int i = 0; i < arguments.length; i++ ) {
+            builder.append( literals[i] );
+
+            int index = arguments[i];
+            appendArgument( builder, all != null ? all[index] : index == 0 ? first : second );
+        }
+        builder.append( literals[ arguments.length ] );
+    }
+
+    private static void appendArgument( StringBuilder builder, Object argument ) {
+        if ( argument instanceof IBuildable ) {
+            ( ( IBuildable ) argument ).appendTo( builder );
+        } else if ( argument instanceof String ) {
+            builder.append( ( String ) argument );
+        } else {
+            builder.append( argument );
+        }
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
@@ -1,9 +1,9 @@
 package org.adaptms.hqlbuilder.expression.column;
 
+import org.adaptms.hqlbuilder.builder.QueryShape;
 import org.adaptms.hqlbuilder.expression.AbstractExpression;
 import org.adaptms.hqlbuilder.expression.ExpressionType;
-
-import java.text.MessageFormat;
+import org.adaptms.hqlbuilder.metadata.PathValidator;
 
 /**
  * @author ppolyakov at 24.03.2022 16:46
@@ -24,8 +24,18 @@ public class ColumnExpression extends AbstractExpression {
     }
 
     @Override
-    public String build() {
-        return MessageFormat.format( getColumnExpressionType().getQuery(), getPath() );
+    public void appendTo( StringBuilder builder ) {
+        getColumnExpressionType().getCompiledQuery().appendTo( builder, getPath() );
+    }
+
+    @Override
+    public void appendShape( QueryShape.Builder shape ) {
+        shape.add( getColumnExpressionType() ).add( getPath() );
+    }
+
+    @Override
+    public void validatePaths( PathValidator validator ) {
+        validator.validate( getPath() );
     }
 
     public String getPath() {
@@ -1,5 +1,7 @@
 package org.adaptms.hqlbuilder.expression.column;
 
+import org.adaptms.hqlbuilder.expression.Template;
+
 /**
  * @author ppolyakov at 24.03.2022 16:52
  */
@@ -10,12 +12,18 @@ public enum ColumnExpressionType {
     COUNT_DISTINCT( "count(distinct {0})" );
 
     private final String query;
+    private final Template compiledQuery;
 
     ColumnExpressionType( String query ) {
         this.query = query;
+        this.compiledQuery = Template.compile( query );
     }
 
     public String getQuery() {
         return query;
     }
+
+    public Template getCompiledQuery() {
+        return compiledQuery;
+    }
 }
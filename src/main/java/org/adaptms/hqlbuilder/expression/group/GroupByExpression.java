@@ -1,7 +1,9 @@
 package org.adaptms.hqlbuilder.expression.group;
 
+import org.adaptms.hqlbuilder.builder.QueryShape;
 import org.adaptms.hqlbuilder.expression.AbstractExpression;
 import org.adaptms.hqlbuilder.expression.ExpressionType;
+import org.adaptms.hqlbuilder.metadata.PathValidator;
 
 /**
  * @author ppolyakov at 24.03.2022 23:12
@@ -19,8 +21,18 @@ public class GroupByExpression extends AbstractExpression {
     }
 
     @Override
-    public String build() {
-        return path;
+    public void appendTo( StringBuilder builder ) {
+        builder.append( path );
+    }
+
+    @Override
+    public void appendShape( QueryShape.Builder shape ) {
+        shape.add( getPath() );
+    }
+
+    @Override
+    public void validatePaths( PathValidator validator ) {
+        validator.validate( getPath() );
     }
 
     protected String getPath() {
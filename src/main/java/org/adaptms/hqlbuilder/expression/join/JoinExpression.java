@@ -1,51 +1,174 @@
 package org.adaptms.hqlbuilder.expression.join;
 
 import org.adaptms.hqlbuilder.builder.HQLBuilder;
+import org.adaptms.hqlbuilder.builder.QueryShape;
 import org.adaptms.hqlbuilder.expression.AbstractExpression;
 import org.adaptms.hqlbuilder.expression.ExpressionType;
 import org.adaptms.hqlbuilder.expression.where.CommonWhereExpression;
+import org.adaptms.hqlbuilder.metadata.EntityMetadata;
+import org.adaptms.hqlbuilder.metadata.EntityProperty;
+import org.adaptms.hqlbuilder.metadata.PathValidator;
+import org.adaptms.hqlbuilder.property.EntityPath;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Locale;
+import java.util.Map;
 
 /**
+ * Join of an entity class with a {@code with} condition, or join of an association path of an already joined entity,
+ * e.g. {@code left join fetch te.reference ate}, with an optional {@code with} condition unless it is fetched
+ *
  * @author ppolyakov at 24.03.2022 22:32
  */
 public class JoinExpression extends AbstractExpression {
 
     private final JoinType joinType;
     private final String joinEntityClass;
+    private final EntityMetadata joinEntity;
     private final String joinEntityAlias;
     private final CommonWhereExpression withExpression;
+    private final String associationPath;
+    private final boolean fetch;
 
     public JoinExpression( JoinType type, String joinEntityClass, String joinEntityAlias, CommonWhereExpression withExpression ) {
+        this( type, joinEntityClass, null, joinEntityAlias, withExpression );
+    }
+
+    public JoinExpression( JoinType type, EntityMetadata joinEntity, String joinEntityAlias, CommonWhereExpression withExpression ) {
+        this( type, joinEntity.getName(), joinEntity, joinEntityAlias, withExpression );
+    }
+
+    private JoinExpression( JoinType type, String joinEntityClass, EntityMetadata joinEntity, String joinEntityAlias, CommonWhereExpression withExpression ) {
         super( ExpressionType.JOIN );
 
         if ( null == joinEntityClass || joinEntityClass.isEmpty() ) throw new IllegalArgumentException( "Join entity class may not be empty." );
 
         this.joinType = type;
         this.joinEntityClass = joinEntityClass;
+        this.joinEntity = joinEntity;
+        this.joinEntityAlias = joinEntityAlias;
+        this.withExpression = withExpression;
+        this.associationPath = null;
+        this.fetch = false;
+    }
+
+    /**
+     * Join of an association path
+     * @param type type of join, only {@link JoinType#INNER} and {@link JoinType#LEFT} joins may fetch
+     * @param association path of the association, starting with the alias of the root or of another joined entity
+     * @param joinEntityAlias alias of joined entity, may be {@code null}
+     * @param fetch {@code true} to initialize the association with the rows of the query
+     * @param withExpression additional condition to join on, may be {@code null}; fetch joins can't have it
+     */
+    public JoinExpression( JoinType type, EntityPath association, String joinEntityAlias, boolean fetch, CommonWhereExpression withExpression ) {
+        super( ExpressionType.JOIN );
+
+        if ( null == association || null == association.getPath() || association.getPath().isEmpty() )
+            throw new IllegalArgumentException( "Join association path may not be empty." );
+        if ( fetch && type != JoinType.INNER && type != JoinType.LEFT )
+            throw new IllegalArgumentException( "Only inner and left joins may fetch, got: " + type );
+        // the condition would filter the fetched collection, leaving entities in the session with a part of their elements
+        if ( fetch && withExpression != null )
+            throw new IllegalArgumentException( "Fetch join can't have a with condition." );
+
+        this.joinType = type;
+        this.joinEntityClass = null;
+        this.joinEntity = null;
         this.joinEntityAlias = joinEntityAlias;
         this.withExpression = withExpression;
+        this.associationPath = association.getPath();
+        this.fetch = fetch;
+    }
+
+    /**
+     * @return the same association join without fetching, to be used in queries that don't select the owner entity
+     */
+    public JoinExpression withoutFetch() {
+        if ( !isFetch() ) return this;
+        return new JoinExpression( getJoinType(), EntityPath.fromString( getAssociationPath() ), getJoinEntityAlias(), false, null );
     }
 
     public void init( HQLBuilder builder ) {
-        getWithExpression().init( builder );
+        if ( getWithExpression() != null ) getWithExpression().init( builder );
     }
 
     @Override
-    public String build() {
-        return getJoinType().name().toLowerCase( Locale.ROOT ) + " join " + getJoinEntityClass() + " " + getJoinEntityAlias()
-                + " with " + getWithExpression().build();
+    public void appendTo( StringBuilder builder ) {
+        appendTo( builder, Collections.emptyMap() );
+    }
+
+    @Override
+    public void appendTo( StringBuilder builder, Map<String, String> renames ) {
+        builder.append( getJoinType().name().toLowerCase( Locale.ROOT ) ).append( " join " );
+        if ( isFetch() ) builder.append( "fetch " );
+        builder.append( getAssociationPath() != null ? getAssociationPath() : getJoinEntityClass() );
+        if ( getJoinEntityAlias() != null ) builder.append( ' ' ).append( getJoinEntityAlias() );
+        if ( getWithExpression() != null ) {
+            builder.append( " with " );
+            getWithExpression().appendTo( builder, renames );
+        }
+    }
+
+    @Override
+    public void appendShape( QueryShape.Builder shape ) {
+        shape.add( getType() ).add( getJoinType() );
+        // marker keeps association paths apart from class names
+        if ( getAssociationPath() != null ) shape.add( isFetch() ? "fetch" : "path" ).add( getAssociationPath() );
+        else shape.add( getJoinEntityClass() );
+        shape.add( getJoinEntityAlias() );
+        if ( getWithExpression() != null ) getWithExpression().appendShape( shape );
+    }
+
+    @Override
+    public void validatePaths( PathValidator validator ) {
+        if ( getAssociationPath() != null ) {
+            EntityProperty property = validator.resolve( getAssociationPath() );
+            if ( property != null && !property.isAssociation() && !isCollection( property.getType() ) )
+                throw new IllegalStateException( "Property \"" + property.getName() + "\" is neither an association nor a collection and can't be joined, path \"" + getAssociationPath() + "\"." );
+            validator.addAlias( getJoinEntityAlias(), property != null ? EntityMetadata.of( property.getTargetType() ) : null );
+        } else {
+            validator.addAlias( getJoinEntityAlias(), getJoinEntity() );
+        }
+        if ( getWithExpression() != null ) getWithExpression().validatePaths( validator );
+    }
+
+    private static boolean isCollection( Class<?> type ) {
+        return Collection.class.isAssignableFrom( type ) || Map.class.isAssignableFrom( type );
     }
 
     protected JoinType getJoinType() {
         return joinType;
     }
 
+    /**
+     * @return class name of joined entity, {@code null} for association joins
+     */
     protected String getJoinEntityClass() {
         return joinEntityClass;
     }
 
+    /**
+     * @return joined association path, {@code null} for entity joins
+     */
+    public String getAssociationPath() {
+        return associationPath;
+    }
+
+    /**
+     * @return {@code true} for fetch joins of associations
+     */
+    public boolean isFetch() {
+        return fetch;
+    }
+
+    /**
+     * @return metadata of joined entity, {@code null} if the expression was created with class name
+     */
+    protected EntityMetadata getJoinEntity() {
+        return joinEntity;
+    }
+
     protected String getJoinEntityAlias() {
         return joinEntityAlias;
     }
@@ -1,7 +1,9 @@
 package org.adaptms.hqlbuilder.expression.order;
 
+import org.adaptms.hqlbuilder.builder.QueryShape;
 import org.adaptms.hqlbuilder.expression.AbstractExpression;
 import org.adaptms.hqlbuilder.expression.ExpressionType;
+import org.adaptms.hqlbuilder.metadata.PathValidator;
 
 import java.util.Locale;
 
@@ -24,15 +26,25 @@ public class OrderByExpression extends AbstractExpression {
     }
 
     @Override
-    public String build() {
-        return getPath() + " " + getDirection().name().toLowerCase( Locale.ROOT );
+    public void appendTo( StringBuilder builder ) {
+        builder.append( getPath() ).append( ' ' ).append( getDirection().name().toLowerCase( Locale.ROOT ) );
     }
 
-    protected String getPath() {
+    @Override
+    public void appendShape( QueryShape.Builder shape ) {
+        shape.add( getPath() ).add( getDirection() );
+    }
+
+    @Override
+    public void validatePaths( PathValidator validator ) {
+        validator.validate( getPath() );
+    }
+
+    public String getPath() {
         return path;
     }
 
-    protected QueryOrderDirection getDirection() {
+    public QueryOrderDirection getDirection() {
         return direction;
     }
 }
@@ -1,10 +1,12 @@
 package org.adaptms.hqlbuilder.expression.set;
 
 import org.adaptms.hqlbuilder.builder.HQLBuilder;
+import org.adaptms.hqlbuilder.builder.QueryShape;
 import org.adaptms.hqlbuilder.expression.ExpressionType;
 import org.adaptms.hqlbuilder.expression.where.CommonWhereExpression;
+import org.adaptms.hqlbuilder.metadata.PathValidator;
 
-import java.text.MessageFormat;
+import java.util.Map;
 
 /**
  * @author ppolyakov at 24.03.2022 23:33
@@ -13,7 +15,7 @@ public class SetExpression extends CommonWhereExpression {
 
     private final String path;
     private final Object value;
-    private String variableName;
+    private Object variableName;
 
     public SetExpression( String path, Object value ) {
         super( ExpressionType.SET );
@@ -28,8 +30,21 @@ public class SetExpression extends CommonWhereExpression {
     }
 
     @Override
-    public String build() {
-        return MessageFormat.format( getType().getTemplate(), path, variableName );
+    public void appendTo( StringBuilder builder, Map<String, String> renames ) {
+        getType().getCompiledTemplate().appendTo( builder, getPath(), renames.isEmpty() ? getVariableName() : rename( getVariableName(), renames ) );
+    }
+
+    @Override
+    public void appendShape( QueryShape.Builder shape ) {
+        shape.add( getType() ).add( getPath() );
+        appendSubstituteShape( shape, getVariableName() );
+    }
+
+    @Override
+    public void validatePaths( PathValidator validator ) {
+        validator.validate( getPath() );
+        // an attached subquery is a copy, it is checked instead of the given builder
+        validateArgumentPaths( validator, getVariableName() instanceof Subquery ? ( ( Subquery ) getVariableName() ).getQuery() : getValue() );
     }
 
     public String getPath() {
@@ -40,7 +55,7 @@ public class SetExpression extends CommonWhereExpression {
         return value;
     }
 
-    protected String getVariableName() {
+    protected Object getVariableName() {
         return variableName;
     }
 }
@@ -2,12 +2,20 @@ package org.adaptms.hqlbuilder.expression.where;
 
 import org.adaptms.hqlbuilder.IBuildable;
 import org.adaptms.hqlbuilder.builder.HQLBuilder;
+import org.adaptms.hqlbuilder.builder.QueryShape;
 import org.adaptms.hqlbuilder.expression.AbstractExpression;
 import org.adaptms.hqlbuilder.expression.ExpressionType;
+import org.adaptms.hqlbuilder.expression.Parameter;
+import org.adaptms.hqlbuilder.metadata.PathValidator;
 import org.adaptms.hqlbuilder.property.EntityPath;
 
-import java.text.MessageFormat;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author ppolyakov at 24.03.2022 17:55
@@ -15,7 +23,8 @@ import java.util.Collection;
 public class CommonWhereExpression extends AbstractExpression {
 
     private final Object[] arguments;
-    private String[] querySubstitutes;
+    private Object[] querySubstitutes;
+    private CommonWhereExpression chunks; // IN list split into bounded chunks
 
     public CommonWhereExpression( ExpressionType type, Object... arguments ) {
         super( type );
@@ -28,7 +37,13 @@ public class CommonWhereExpression extends AbstractExpression {
         if ( getType().getNumberOfArguments() != getArguments().length )
             throw new IllegalArgumentException( "Incorrect arguments amount. Expected: " + getType().getNumberOfArguments() + ", got: " + getArguments().length );
 
-        this.querySubstitutes = new String[ getArguments().length ];
+        if ( isInList() && builder.getInListChunkSize() > 0 && sizeOf( getArguments()[1] ) > builder.getInListChunkSize() ) {
+            this.chunks = splitIntoChunks( builder.getInListChunkSize() );
+            this.chunks.init( builder );
+            return;
+        }
+
+        this.querySubstitutes = new Object[ getArguments().length ];
 
         for ( int i = 0; i < getQuerySubstitutes().length; i++ ) {
             this.getQuerySubstitutes()[i] = processVariable( getArguments()[i], builder );
@@ -36,31 +51,307 @@ public class CommonWhereExpression extends AbstractExpression {
     }
 
     @Override
-    public String build() {
-        return MessageFormat.format( getType().getTemplate(), getQuerySubstitutes() );
+    public void appendTo( StringBuilder builder ) {
+        appendTo( builder, Collections.emptyMap() );
+    }
+
+    @Override
+    public void appendTo( StringBuilder builder, Map<String, String> renames ) {
+        if ( chunks != null ) {
+            chunks.appendTo( builder, renames );
+            return;
+        }
+        getType().getCompiledTemplate().appendTo( builder, renames.isEmpty() ? getQuerySubstitutes() : rename( getQuerySubstitutes(), renames ) );
+    }
+
+    @Override
+    public void appendShape( QueryShape.Builder shape ) {
+        if ( chunks != null ) {
+            chunks.appendShape( shape );
+            return;
+        }
+
+        shape.add( getType() );
+        // substitutes hold paths, generated variable names and subqueries, but never the values
+        for ( Object substitute : getQuerySubstitutes() ) {
+            appendSubstituteShape( shape, substitute );
+        }
+    }
+
+    @Override
+    public void validatePaths( PathValidator validator ) {
+        if ( getArguments() == null ) return;
+        if ( chunks != null ) {
+            chunks.validatePaths( validator );
+            return;
+        }
+        for ( int i = 0; i < getArguments().length; i++ ) {
+            // attached subqueries are copies, they are checked instead of the given builders
+            Object substitute = getQuerySubstitutes() != null ? getQuerySubstitutes()[i] : null;
+            validateArgumentPaths( validator, substitute instanceof Subquery ? ( ( Subquery ) substitute ).getQuery() : getArguments()[i] );
+        }
+    }
+
+    /**
+     * Check the argument if it is a path or a subquery
+     * @param validator validator of the query the expression belongs to
+     * @param argument expression argument
+     */
+    protected static void validateArgumentPaths( PathValidator validator, Object argument ) {
+        if ( argument instanceof EntityPath ) {
+            validator.validate( ( ( EntityPath ) argument ).getPath() );
+        } else if ( argument instanceof HQLBuilder ) {
+            ( ( HQLBuilder ) argument ).validatePaths( validator );
+        }
     }
 
-    protected String processVariable( Object input, HQLBuilder builder ) {
+    protected static void appendSubstituteShape( QueryShape.Builder shape, Object substitute ) {
+        if ( substitute instanceof Subquery ) {
+            ( ( Subquery ) substitute ).appendShape( shape );
+        } else if ( substitute instanceof VariableReference ) {
+            shape.add( ( ( VariableReference ) substitute ).getReference() );
+        } else {
+            shape.add( substitute );
+        }
+    }
+
+    /**
+     * @param substitutes query substitutes
+     * @param renames new names of variables
+     * @return substitutes with variable references and subqueries renamed
+     */
+    protected static Object[] rename( Object[] substitutes, Map<String, String> renames ) {
+        Object[] renamed = new Object[ substitutes.length ];
+        for ( int i = 0; i < substitutes.length; i++ ) {
+            renamed[i] = rename( substitutes[i], renames );
+        }
+        return renamed;
+    }
+
+    /**
+     * @param substitute query substitute
+     * @param renames new names of variables
+     * @return the substitute with the variable reference or the subquery renamed, the same substitute otherwise
+     */
+    protected static Object rename( Object substitute, Map<String, String> renames ) {
+        if ( substitute instanceof VariableReference ) return ( ( VariableReference ) substitute ).rename( renames );
+        if ( substitute instanceof Subquery ) return ( ( Subquery ) substitute ).rename( renames );
+        return substitute;
+    }
+
+    /**
+     * Convert argument to its query substitute
+     * @param input argument
+     * @param builder builder the expression belongs to
+     * @return path as {@code String}, {@link VariableReference} for values and parameters, or {@link IBuildable} for subqueries
+     */
+    protected Object processVariable( Object input, HQLBuilder builder ) {
         if ( input instanceof EntityPath ) {
             return ( ( EntityPath ) input ).getPath();
         } else if ( input instanceof IBuildable ) {
+            // subquery is rendered together with the outer query, straight into its buffer. Builders are copied,
+            // so that changing them afterwards changes neither the rendering nor the shape of this query
             if ( input instanceof HQLBuilder ) {
-                HQLBuilder incomingBuilder = ( HQLBuilder ) input;
-                builder.getVariables().putAll( incomingBuilder.getVariables() );
+                HQLBuilder subquery = HQLBuilder.clone( ( HQLBuilder ) input );
+                return new Subquery( subquery, builder.addSubqueryVariables( subquery ) );
             }
-            return "(" + ( ( IBuildable ) input ).build() + ")";
+            return new Subquery( ( IBuildable ) input );
+        } else if ( input instanceof Parameter ) {
+            Parameter parameter = ( Parameter ) input;
+            return VariableReference.of( builder, builder.addParameter( parameter ), parameter.isCollection() );
         } else if ( input.getClass().isArray() || Collection.class.isAssignableFrom( input.getClass() ) ) {
-            return "(:" + builder.addVariable( input ) + ")";
+            if ( isInList() && builder.isInListPadding() ) input = pad( input, builder.getInListChunkSize() );
+            return VariableReference.of( builder, builder.addVariable( input ), true );
         } else {
-            return  ":" + builder.addVariable( input );
+            return VariableReference.of( builder, builder.addVariable( input ), false );
+        }
+    }
+
+    /**
+     * @return {@code true} for {@code in} and {@code not in} expressions with a collection of values
+     */
+    protected boolean isInList() {
+        return ( getType() == ExpressionType.IN || getType() == ExpressionType.NOT_IN )
+                && getArguments().length == 2 && sizeOf( getArguments()[1] ) >= 0;
+    }
+
+    /**
+     * Split {@code in} into {@code (x in (:a) or x in (:b) ...)}, {@code not in} into {@code (x not in (:a) and ...)}
+     * @param chunkSize maximum number of values in one list
+     * @return expression to render instead of this one
+     */
+    private CommonWhereExpression splitIntoChunks( int chunkSize ) {
+        List<Object> values = toList( getArguments()[1] );
+        CommonWhereExpression[] parts = new CommonWhereExpression[ ( values.size() + chunkSize - 1 ) / chunkSize ];
+        for ( int i = 0; i < parts.length; i++ ) {
+            List<Object> chunk = new ArrayList<>( values.subList( i * chunkSize, Math.min( values.size(), ( i + 1 ) * chunkSize ) ) );
+            parts[i] = new CommonWhereExpression( getType(), getArguments()[0], chunk );
         }
+        return getType() == ExpressionType.IN ? new OrExpression( parts ) : new AndExpression( parts );
+    }
+
+    /**
+     * Pad list with its last value up to the next power of two, so that lists of different size share the statement
+     * @param values collection or array
+     * @param limit maximum size of the list, 0 if not limited
+     * @return padded list, or the input if no padding is needed
+     */
+    private static Object pad( Object values, int limit ) {
+        int size = sizeOf( values );
+        if ( size < 2 ) return values;
+
+        int padded = Integer.highestOneBit( size - 1 ) << 1;
+        if ( limit > 0 ) padded = Math.min( padded, limit );
+        if ( padded <= size ) return values;
+
+        List<Object> list = new ArrayList<>( padded );
+        list.addAll( toList( values ) );
+        Object last = list.get( size - 1 );
+        while ( list.size() < padded ) list.add( last );
+        return list;
+    }
+
+    private static int sizeOf( Object values ) {
+        if ( values instanceof Collection ) return ( ( Collection<?> ) values ).size();
+        if ( values != null && values.getClass().isArray() ) return Array.getLength( values );
+        return -1;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static List<Object> toList( Object values ) {
+        if ( values instanceof List ) return ( List<Object> ) values;
+        if ( values instanceof Collection ) return new ArrayList<>( ( Collection<Object> ) values );
+
+        int length = Array.getLength( values );
+        List<Object> list = new ArrayList<>( length );
+        for ( int i = 0; i < length; i++ ) list.add( Array.get( values, i ) );
+        return list;
     }
 
     protected Object[] getArguments() {
         return arguments;
     }
 
-    protected String[] getQuerySubstitutes() {
+    protected Object[] getQuerySubstitutes() {
         return querySubstitutes;
     }
+
+    /**
+     * Reference to a variable or a parameter, e.g. {@code :var_te0} or {@code (:ids)} for collections
+     */
+    protected static final class VariableReference implements IBuildable {
+        private final String prefix;
+        private final String name;
+        private final String suffix;
+        private final String reference;
+
+        private VariableReference( String prefix, String name, String suffix ) {
+            this.prefix = prefix;
+            this.name = name;
+            this.suffix = suffix;
+            this.reference = prefix + name + suffix;
+        }
+
+        /**
+         * @param builder builder the variable belongs to
+         * @param name variable name
+         * @param collection {@code true} to put the reference in parentheses
+         * @return reference as the naming of the builder renders it
+         */
+        static VariableReference of( HQLBuilder builder, String name, boolean collection ) {
+            String reference = builder.getParameterNaming().reference( name );
+            // the name can only be replaced if the naming puts it at the end of the reference
+            String prefix = reference.endsWith( name ) ? reference.substring( 0, reference.length() - name.length() ) : reference;
+            String referenced = reference.endsWith( name ) ? name : "";
+            return collection ? new VariableReference( "(" + prefix, referenced, ")" ) : new VariableReference( prefix, referenced, "" );
+        }
+
+        VariableReference rename( Map<String, String> renames ) {
+            String renamed = renames.get( name );
+            return renamed == null ? this : new VariableReference( prefix, renamed, suffix );
+        }
+
+        @Override
+        public String build() {
+            return reference;
+        }
+
+        @Override
+        public void appendTo( StringBuilder builder ) {
+            builder.append( reference );
+        }
+
+        public String getReference() {
+            return reference;
+        }
+
+        @Override
+        public String toString() {
+            return reference;
+        }
+    }
+
+    /**
+     * Subquery argument, rendered in parentheses
+     */
+    protected static class Subquery implements IBuildable {
+        private final IBuildable query;
+        private final Map<String, String> renames; // variables renamed in the outer query
+
+        protected Subquery( IBuildable query ) {
+            this( query, Collections.emptyMap() );
+        }
+
+        protected Subquery( IBuildable query, Map<String, String> renames ) {
+            this.query = query;
+            this.renames = renames;
+        }
+
+        /**
+         * @param outer new names of the variables of the outer query
+         * @return subquery with its variables named as in the query the outer query belongs to
+         */
+        Subquery rename( Map<String, String> outer ) {
+            Map<String, String> composed = new HashMap<>();
+            for ( Map.Entry<String, String> rename : outer.entrySet() ) {
+                if ( !renames.containsKey( rename.getKey() ) ) composed.put( rename.getKey(), rename.getValue() );
+            }
+            for ( Map.Entry<String, String> rename : renames.entrySet() ) {
+                composed.put( rename.getKey(), outer.getOrDefault( rename.getValue(), rename.getValue() ) );
+            }
+            return new Subquery( query, composed );
+        }
+
+        @Override
+        public String build() {
+            StringBuilder builder = new StringBuilder();
+            appendTo( builder );
+            return builder.toString();
+        }
+
+        @Override
+        public void appendTo( StringBuilder builder ) {
+            builder.append( '(' );
+            // renamed variables are only known to builders, other subqueries don't have variables of the outer query
+            if ( !renames.isEmpty() && query instanceof HQLBuilder ) {
+                ( ( HQLBuilder ) query ).appendTo( builder, renames );
+            } else {
+                query.appendTo( builder );
+            }
+            builder.append( ')' );
+        }
+
+        protected void appendShape( QueryShape.Builder shape ) {
+            if ( query instanceof HQLBuilder ) {
+                shape.add( QueryShape.of( ( HQLBuilder ) query ) );
+                if ( !renames.isEmpty() ) shape.add( renames );
+            } else {
+                shape.add( build() );
+            }
+        }
+
+        public IBuildable getQuery() {
+            return query;
+        }
+    }
 }
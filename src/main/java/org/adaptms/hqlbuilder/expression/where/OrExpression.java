@@ -1,11 +1,11 @@
 package org.adaptms.hqlbuilder.expression.where;
 
 import org.adaptms.hqlbuilder.builder.HQLBuilder;
-import org.adaptms.hqlbuilder.expression.AbstractExpression;
+import org.adaptms.hqlbuilder.builder.QueryShape;
 import org.adaptms.hqlbuilder.expression.ExpressionType;
+import org.adaptms.hqlbuilder.metadata.PathValidator;
 
-import java.util.Arrays;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 /**
  * @author ppolyakov at 24.03.2022 17:30
@@ -31,8 +31,29 @@ public class OrExpression extends CommonWhereExpression {
     }
 
     @Override
-    public String build() {
-        return "(" + Arrays.stream( getExpressions() ).map( AbstractExpression::build ).collect( Collectors.joining( " or " ) ) + ")";
+    public void appendTo( StringBuilder builder, Map<String, String> renames ) {
+        CommonWhereExpression[] expressions = getExpressions();
+        builder.append( '(' );
+        for ( int i = 0; i < expressions.length; i++ ) {
+            if ( i > 0 ) builder.append( " or " );
+            expressions[i].appendTo( builder, renames );
+        }
+        builder.append( ')' );
+    }
+
+    @Override
+    public void appendShape( QueryShape.Builder shape ) {
+        shape.add( getType() ).add( getExpressions().length );
+        for ( CommonWhereExpression expression : getExpressions() ) {
+            expression.appendShape( shape );
+        }
+    }
+
+    @Override
+    public void validatePaths( PathValidator validator ) {
+        for ( CommonWhereExpression expression : getExpressions() ) {
+            expression.validatePaths( validator );
+        }
     }
 
     protected CommonWhereExpression[] getExpressions() {
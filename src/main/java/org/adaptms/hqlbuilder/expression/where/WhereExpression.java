@@ -1,8 +1,12 @@
 package org.adaptms.hqlbuilder.expression.where;
 
 import org.adaptms.hqlbuilder.builder.HQLBuilder;
+import org.adaptms.hqlbuilder.builder.QueryShape;
 import org.adaptms.hqlbuilder.expression.AbstractExpression;
 import org.adaptms.hqlbuilder.expression.ExpressionType;
+import org.adaptms.hqlbuilder.metadata.PathValidator;
+
+import java.util.Map;
 
 /**
  * @author ppolyakov at 24.03.2022 17:25
@@ -22,8 +26,23 @@ public class WhereExpression extends AbstractExpression {
     }
 
     @Override
-    public String build() {
-        return getExpression().build();
+    public void appendTo( StringBuilder builder ) {
+        getExpression().appendTo( builder );
+    }
+
+    @Override
+    public void appendTo( StringBuilder builder, Map<String, String> renames ) {
+        getExpression().appendTo( builder, renames );
+    }
+
+    @Override
+    public void appendShape( QueryShape.Builder shape ) {
+        getExpression().appendShape( shape );
+    }
+
+    @Override
+    public void validatePaths( PathValidator validator ) {
+        getExpression().validatePaths( validator );
     }
 
     public CommonWhereExpression getExpression() {
@@ -0,0 +1,231 @@
+package org.adaptms.hqlbuilder.expression.where;
+
+import org.adaptms.hqlbuilder.IBuildable;
+import org.adaptms.hqlbuilder.expression.ExpressionType;
+import org.adaptms.hqlbuilder.expression.Parameter;
+import org.adaptms.hqlbuilder.property.EntityPath;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Simplifies where trees before their variables are added to the builder:
+ * <ul>
+ *     <li>{@code and} inside {@code and} and {@code or} inside {@code or} are flattened;</li>
+ *     <li>repeated predicates are removed;</li>
+ *     <li>{@code x = a or x = b or x in (c, d)} is merged into {@code x in (a, b, c, d)};</li>
+ *     <li>groups left with a single predicate are replaced by it;</li>
+ *     <li>predicates of a group are sorted by their paths and types, so the same filter added in a different order
+ *     renders the same query.</li>
+ * </ul>
+ * Only expressions of this package are rewritten, other subclasses of {@link CommonWhereExpression} are kept as they are.
+ *
+ * @author ppolyakov at 18.10.2026 15:00
+ */
+public final class WhereNormalizer {
+
+    private static final Comparator<CommonWhereExpression> CANONICAL_ORDER = Comparator.comparing( WhereNormalizer::sortKey );
+
+    private WhereNormalizer() {
+    }
+
+    /**
+     * @param expression where tree, it is not changed
+     * @return simplified tree, the given one if there is nothing to simplify
+     */
+    public static CommonWhereExpression normalize( CommonWhereExpression expression ) {
+        if ( expression.getClass() == AndExpression.class ) {
+            return group( ExpressionType.AND, ( ( AndExpression ) expression ).getExpressions() );
+        }
+        if ( expression.getClass() == OrExpression.class ) {
+            return group( ExpressionType.OR, ( ( OrExpression ) expression ).getExpressions() );
+        }
+        return expression;
+    }
+
+    /**
+     * @param expression where tree
+     * @return predicates of the tree if it is an {@code and}, the tree itself otherwise
+     */
+    public static List<CommonWhereExpression> conjuncts( CommonWhereExpression expression ) {
+        if ( expression.getClass() == AndExpression.class ) {
+            return Arrays.asList( ( ( AndExpression ) expression ).getExpressions() );
+        }
+        return Arrays.asList( expression );
+    }
+
+    /**
+     * Structural equality of where trees: same types, paths, parameters and equal values; subqueries must be the same instance
+     * @param one where tree
+     * @param another where tree
+     * @return {@code true} if both trees render the same predicate with the same values
+     */
+    public static boolean isSame( CommonWhereExpression one, CommonWhereExpression another ) {
+        if ( one == another ) return true;
+        if ( one.getClass() != another.getClass() || one.getType() != another.getType() ) return false;
+
+        if ( one instanceof AndExpression ) return isSame( ( ( AndExpression ) one ).getExpressions(), ( ( AndExpression ) another ).getExpressions() );
+        if ( one instanceof OrExpression ) return isSame( ( ( OrExpression ) one ).getExpressions(), ( ( OrExpression ) another ).getExpressions() );
+        if ( one.getClass() != CommonWhereExpression.class || one.getArguments() == null || another.getArguments() == null ) return false;
+
+        Object[] arguments = one.getArguments();
+        Object[] others = another.getArguments();
+        if ( arguments.length != others.length ) return false;
+        for ( int i = 0; i < arguments.length; i++ ) {
+            if ( !isSameArgument( arguments[i], others[i] ) ) return false;
+        }
+        return true;
+    }
+
+    private static boolean isSame( CommonWhereExpression[] expressions, CommonWhereExpression[] others ) {
+        if ( expressions.length != others.length ) return false;
+        for ( int i = 0; i < expressions.length; i++ ) {
+            if ( !isSame( expressions[i], others[i] ) ) return false;
+        }
+        return true;
+    }
+
+    private static boolean isSameArgument( Object argument, Object other ) {
+        if ( argument == other ) return true;
+        if ( argument == null || other == null ) return false;
+        if ( argument instanceof EntityPath ) return other instanceof EntityPath && ( ( EntityPath ) argument ).getPath().equals( ( ( EntityPath ) other ).getPath() );
+        if ( argument instanceof IBuildable ) return false;
+        if ( argument.getClass().isArray() ) return other.getClass().isArray() && Arrays.deepEquals( new Object[]{ argument }, new Object[]{ other } );
+        return argument.equals( other );
+    }
+
+    private static CommonWhereExpression group( ExpressionType type, CommonWhereExpression[] expressions ) {
+        List<CommonWhereExpression> flat = new ArrayList<>( expressions.length );
+        flatten( type, expressions, flat );
+
+        List<CommonWhereExpression> distinct = new ArrayList<>( flat.size() );
+        for ( CommonWhereExpression expression : flat ) {
+            if ( !contains( distinct, expression ) ) distinct.add( expression );
+        }
+        if ( type == ExpressionType.OR ) distinct = mergeEqualities( distinct );
+        if ( distinct.size() == 1 ) return distinct.get( 0 );
+
+        distinct.sort( CANONICAL_ORDER );
+        CommonWhereExpression[] children = distinct.toArray( new CommonWhereExpression[ 0 ] );
+        return type == ExpressionType.AND ? new AndExpression( children ) : new OrExpression( children );
+    }
+
+    private static void flatten( ExpressionType type, CommonWhereExpression[] expressions, List<CommonWhereExpression> result ) {
+        for ( CommonWhereExpression expression : expressions ) {
+            CommonWhereExpression normalized = normalize( expression );
+            if ( normalized.getType() == type && ( normalized.getClass() == AndExpression.class || normalized.getClass() == OrExpression.class ) ) {
+                result.addAll( Arrays.asList( type == ExpressionType.AND ? ( ( AndExpression ) normalized ).getExpressions() : ( ( OrExpression ) normalized ).getExpressions() ) );
+            } else {
+                result.add( normalized );
+            }
+        }
+    }
+
+    private static boolean contains( List<CommonWhereExpression> expressions, CommonWhereExpression expression ) {
+        for ( CommonWhereExpression existing : expressions ) {
+            if ( isSame( existing, expression ) ) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Merge {@code eq} and {@code in} of the same path with plain values into one {@code in}, at the place of the first of them
+     */
+    private static List<CommonWhereExpression> mergeEqualities( List<CommonWhereExpression> expressions ) {
+        Map<String, Set<Object>> valuesByPath = new LinkedHashMap<>();
+        Map<String, Integer> predicatesByPath = new LinkedHashMap<>();
+        for ( CommonWhereExpression expression : expressions ) {
+            String path = mergeablePath( expression );
+            if ( path == null ) continue;
+            valuesByPath.computeIfAbsent( path, key -> new LinkedHashSet<>() ).addAll( valuesOf( expression ) );
+            predicatesByPath.merge( path, 1, Integer::sum );
+        }
+        if ( predicatesByPath.values().stream().noneMatch( count -> count > 1 ) ) return expressions;
+
+        List<CommonWhereExpression> merged = new ArrayList<>( expressions.size() );
+        Set<String> added = new LinkedHashSet<>();
+        for ( CommonWhereExpression expression : expressions ) {
+            String path = mergeablePath( expression );
+            if ( path == null || predicatesByPath.get( path ) == 1 ) {
+                merged.add( expression );
+            } else if ( added.add( path ) ) {
+                merged.add( new CommonWhereExpression( ExpressionType.IN, expression.getArguments()[0], new ArrayList<>( valuesByPath.get( path ) ) ) );
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * @return path of {@code path = value} or {@code path in (values)}, {@code null} for other predicates
+     */
+    private static String mergeablePath( CommonWhereExpression expression ) {
+        if ( expression.getClass() != CommonWhereExpression.class || expression.getArguments() == null ) return null;
+        if ( expression.getType() != ExpressionType.EQ && expression.getType() != ExpressionType.IN ) return null;
+
+        Object[] arguments = expression.getArguments();
+        if ( arguments.length != 2 || !( arguments[0] instanceof EntityPath ) ) return null;
+
+        Object value = arguments[1];
+        if ( value == null || value instanceof EntityPath || value instanceof IBuildable || value instanceof Parameter ) return null;
+        boolean list = value instanceof Collection || value.getClass().isArray();
+        return list == ( expression.getType() == ExpressionType.IN ) ? ( ( EntityPath ) arguments[0] ).getPath() : null;
+    }
+
+    private static Collection<Object> valuesOf( CommonWhereExpression expression ) {
+        Object value = expression.getArguments()[1];
+        if ( expression.getType() == ExpressionType.EQ ) return Arrays.asList( value );
+        if ( value instanceof Collection ) return new ArrayList<>( ( Collection<?> ) value );
+
+        int length = Array.getLength( value );
+        List<Object> values = new ArrayList<>( length );
+        for ( int i = 0; i < length; i++ ) values.add( Array.get( value, i ) );
+        return values;
+    }
+
+    /**
+     * Paths, parameter names and types of the predicate, but not its values
+     */
+    private static String sortKey( CommonWhereExpression expression ) {
+        StringBuilder key = new StringBuilder();
+        appendSortKey( key, expression );
+        return key.toString();
+    }
+
+    private static void appendSortKey( StringBuilder key, CommonWhereExpression expression ) {
+        if ( expression instanceof AndExpression || expression instanceof OrExpression ) {
+            key.append( expression.getType() ).append( '(' );
+            CommonWhereExpression[] children = expression instanceof AndExpression
+                    ? ( ( AndExpression ) expression ).getExpressions() : ( ( OrExpression ) expression ).getExpressions();
+            for ( CommonWhereExpression child : children ) appendSortKey( key.append( ' ' ), child );
+            key.append( ')' );
+            return;
+        }
+
+        Object[] arguments = expression.getArguments();
+        if ( arguments == null || arguments.length == 0 ) {
+            key.append( expression.getType() );
+            return;
+        }
+        // the first argument goes first, so that predicates of the same property stay together
+        appendSortKey( key, arguments[0] );
+        key.append( ' ' ).append( expression.getType() );
+        for ( int i = 1; i < arguments.length; i++ ) {
+            appendSortKey( key.append( ' ' ), arguments[i] );
+        }
+    }
+
+    private static void appendSortKey( StringBuilder key, Object argument ) {
+        if ( argument instanceof EntityPath ) key.append( ( ( EntityPath ) argument ).getPath() );
+        else if ( argument instanceof Parameter ) key.append( ':' ).append( ( ( Parameter ) argument ).getName() );
+        else if ( argument instanceof IBuildable ) key.append( "(subquery)" );
+        else key.append( '?' );
+    }
+}
@@ -0,0 +1,231 @@
+package org.adaptms.hqlbuilder.metadata;
+
+import javax.persistence.Access;
+import javax.persistence.AccessType;
+import javax.persistence.Embeddable;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.MappedSuperclass;
+import javax.persistence.Transient;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reflection data of a persistent class, resolved once per class and shared by all builders:
+ * the name used in HQL, whether it is an entity or an embeddable and its mapped properties.
+ * <p>
+ * Metadata of a {@code Class} is kept in a {@link ClassValue}, so it doesn't prevent the class from being unloaded.
+ * Classes looked up by name are kept in a map of weak references, so {@code Class.forName} is only called for the first
+ * query with that name and the map doesn't keep the classes loaded either. Names are resolved with the class loader
+ * of this library.
+ *
+ * @author ppolyakov at 18.10.2026 01:10
+ */
+public final class EntityMetadata {
+
+    private static final ClassValue<EntityMetadata> BY_CLASS = new ClassValue<EntityMetadata>() {
+        @Override
+        protected EntityMetadata computeValue( Class<?> type ) {
+            return new EntityMetadata( type );
+        }
+    };
+
+    private static final ConcurrentMap<String, WeakReference<Class<?>>> BY_NAME = new ConcurrentHashMap<>();
+
+    private final Class<?> type;
+    private final String name;
+    private final boolean entity;
+    private final boolean embeddable;
+    private volatile Map<String, EntityProperty> properties; // resolved on first use
+
+    private EntityMetadata( Class<?> type ) {
+        this.type = type;
+        this.name = type.getCanonicalName();
+        this.entity = type.isAnnotationPresent( Entity.class );
+        this.embeddable = type.isAnnotationPresent( Embeddable.class );
+    }
+
+    /**
+     * Get metadata of the class
+     * @param type persistent class
+     * @return metadata, same instance for every call
+     */
+    public static EntityMetadata of( Class<?> type ) {
+        return BY_CLASS.get( type );
+    }
+
+    /**
+     * Get metadata of the class by name
+     * @param className name of the class as accepted by {@link Class#forName(String)}
+     * @return metadata, same instance for every call
+     * @throws ClassNotFoundException if class doesn't exist
+     */
+    public static EntityMetadata of( String className ) throws ClassNotFoundException {
+        WeakReference<Class<?>> reference = BY_NAME.get( className );
+        Class<?> type = reference != null ? reference.get() : null;
+        if ( type == null ) {
+            type = Class.forName( className );
+            // a cleared reference is replaced, the class was unloaded and loaded again
+            BY_NAME.put( className, new WeakReference<>( type ) );
+        }
+        return of( type );
+    }
+
+    /**
+     * @return this metadata
+     * @throws IllegalStateException if the class is not annotated with {@code javax.persistence.Entity}
+     */
+    public EntityMetadata requireEntity() {
+        if ( !entity )
+            throw new IllegalStateException( "Class \"" + name + "\" is not an Entity. You need to annotate it with javax.persistence.Entity." );
+        return this;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return canonical name of the class, as used in HQL
+     */
+    public String getName() {
+        return name;
+    }
+
+    public boolean isEntity() {
+        return entity;
+    }
+
+    public boolean isEmbeddable() {
+        return embeddable;
+    }
+
+    /**
+     * Mapped properties of the class and of its entity and mapped superclasses: non-static, non-transient fields
+     * with field access, getters with property access. Access type is taken from {@code Access} of the class
+     * or of the hierarchy, otherwise from the placement of {@code Id}; members annotated with {@code Access}
+     * are mapped whatever the access type of their class
+     * @return properties by name
+     */
+    public Map<String, EntityProperty> getProperties() {
+        Map<String, EntityProperty> result = properties;
+        if ( result == null ) properties = result = resolveProperties();
+        return result;
+    }
+
+    /**
+     * @param name property name
+     * @return property or {@code null} if the class has no such mapped property
+     */
+    public EntityProperty getProperty( String name ) {
+        return getProperties().get( name );
+    }
+
+    /**
+     * @return identifier property, annotated with {@code Id} or {@code EmbeddedId}, {@code null} if the class has none
+     */
+    public EntityProperty getIdProperty() {
+        for ( EntityProperty property : getProperties().values() ) {
+            if ( property.isId() ) return property;
+        }
+        return null;
+    }
+
+    private Map<String, EntityProperty> resolveProperties() {
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for ( Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass() ) {
+            if ( current != type && !current.isAnnotationPresent( Entity.class ) && !current.isAnnotationPresent( MappedSuperclass.class ) ) break;
+            hierarchy.add( 0, current );
+        }
+
+        boolean propertyAccess = isPropertyAccess( hierarchy );
+        Map<String, EntityProperty> result = new LinkedHashMap<>();
+        for ( Class<?> current : hierarchy ) {
+            Access classAccess = current.getAnnotation( Access.class );
+            boolean classPropertyAccess = classAccess != null ? classAccess.value() == AccessType.PROPERTY : propertyAccess;
+
+            for ( Field field : current.getDeclaredFields() ) {
+                int modifiers = field.getModifiers();
+                if ( Modifier.isStatic( modifiers ) || Modifier.isTransient( modifiers ) || field.isSynthetic() ) continue;
+                if ( field.isAnnotationPresent( Transient.class ) ) continue;
+                if ( classPropertyAccess && !hasAccess( field, AccessType.FIELD ) ) continue;
+                result.putIfAbsent( field.getName(), new EntityProperty( field ) );
+            }
+
+            for ( Method method : current.getDeclaredMethods() ) {
+                String name = propertyName( method );
+                if ( name == null || method.isAnnotationPresent( Transient.class ) ) continue;
+                if ( !classPropertyAccess && !hasAccess( method, AccessType.PROPERTY ) ) continue;
+                result.putIfAbsent( name, new EntityProperty( name, method ) );
+            }
+        }
+        return Collections.unmodifiableMap( result );
+    }
+
+    /**
+     * Default access type of the hierarchy: {@code Access} of the topmost class that has it, otherwise
+     * the member annotated with {@code Id} or {@code EmbeddedId}
+     * @param hierarchy persistent classes, topmost first
+     * @return {@code true} for property access, {@code false} for field access
+     */
+    private static boolean isPropertyAccess( List<Class<?>> hierarchy ) {
+        for ( Class<?> current : hierarchy ) {
+            Access access = current.getAnnotation( Access.class );
+            if ( access != null ) return access.value() == AccessType.PROPERTY;
+        }
+        for ( Class<?> current : hierarchy ) {
+            for ( Field field : current.getDeclaredFields() ) {
+                if ( isId( field ) ) return false;
+            }
+            for ( Method method : current.getDeclaredMethods() ) {
+                if ( isId( method ) && propertyName( method ) != null ) return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isId( AnnotatedElement member ) {
+        return member.isAnnotationPresent( Id.class ) || member.isAnnotationPresent( EmbeddedId.class );
+    }
+
+    private static boolean hasAccess( AnnotatedElement member, AccessType type ) {
+        Access access = member.getAnnotation( Access.class );
+        return access != null && access.value() == type;
+    }
+
+    /**
+     * @param method method of a persistent class
+     * @return name of the property if the method is a getter, {@code null} otherwise
+     */
+    private static String propertyName( Method method ) {
+        if ( Modifier.isStatic( method.getModifiers() ) || method.isSynthetic() || method.isBridge() || method.getParameterCount() > 0 ) return null;
+
+        String name = method.getName();
+        int prefix;
+        if ( name.startsWith( "get" ) && method.getReturnType() != void.class ) prefix = 3;
+        else if ( name.startsWith( "is" ) && method.getReturnType() == boolean.class ) prefix = 2;
+        else return null;
+        if ( name.length() == prefix ) return null;
+
+        // JavaBeans rule: getURL is the property URL, getName is name
+        if ( name.length() > prefix + 1 && Character.isUpperCase( name.charAt( prefix + 1 ) ) && Character.isUpperCase( name.charAt( prefix ) ) )
+            return name.substring( prefix );
+        return Character.toLowerCase( name.charAt( prefix ) ) + name.substring( prefix + 1 );
+    }
+
+    @Override
+    public String toString() {
+        return "EntityMetadata[" + name + "]";
+    }
+}
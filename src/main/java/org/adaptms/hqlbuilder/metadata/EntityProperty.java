@@ -0,0 +1,130 @@
+package org.adaptms.hqlbuilder.metadata;
+
+import javax.persistence.Embeddable;
+import javax.persistence.Embedded;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Mapped property of a persistent class, see {@link EntityMetadata#getProperties()}
+ *
+ * @author ppolyakov at 18.10.2026 01:10
+ */
+public final class EntityProperty {
+
+    private final String name;
+    private final Class<?> type;
+    private final Class<?> targetType;
+    private final boolean association;
+    private final boolean embedded;
+    private final boolean id;
+
+    /**
+     * Property of a class with field access
+     */
+    EntityProperty( Field field ) {
+        this( field.getName(), field.getType(), field.getGenericType(), field );
+    }
+
+    /**
+     * Property of a class with property access
+     * @param name property name
+     * @param getter getter of the property, {@code getName()} or {@code isName()}
+     */
+    EntityProperty( String name, Method getter ) {
+        this( name, getter.getReturnType(), getter.getGenericReturnType(), getter );
+    }
+
+    private EntityProperty( String name, Class<?> type, Type genericType, AnnotatedElement member ) {
+        this.name = name;
+        this.type = type;
+        this.targetType = targetTypeOf( type, genericType );
+        this.association = targetType.isAnnotationPresent( Entity.class );
+        this.embedded = targetType.isAnnotationPresent( Embeddable.class )
+                || member.isAnnotationPresent( Embedded.class ) || member.isAnnotationPresent( EmbeddedId.class );
+        this.id = member.isAnnotationPresent( Id.class ) || member.isAnnotationPresent( EmbeddedId.class );
+    }
+
+    /**
+     * Type that a path continues with: element type for collections, value type for maps, declared type otherwise
+     */
+    private static Class<?> targetTypeOf( Class<?> type, Type generic ) {
+        if ( !isCollection( type ) ) return type;
+
+        if ( !( generic instanceof ParameterizedType ) ) return type;
+        Type[] arguments = ( ( ParameterizedType ) generic ).getActualTypeArguments();
+        Type element = arguments[ arguments.length - 1 ];
+        if ( element instanceof ParameterizedType ) element = ( ( ParameterizedType ) element ).getRawType();
+        return element instanceof Class ? ( Class<?> ) element : type;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return declared type of the field or return type of the getter
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return type of the referenced entity or embeddable, element type for collections
+     */
+    public Class<?> getTargetType() {
+        return targetType;
+    }
+
+    /**
+     * @return {@code true} if the property references another entity or a collection of entities
+     */
+    public boolean isAssociation() {
+        return association;
+    }
+
+    /**
+     * @return {@code true} if the property is an embeddable value
+     */
+    public boolean isEmbedded() {
+        return embedded;
+    }
+
+    /**
+     * @return {@code true} if the property is the identifier, annotated with {@code Id} or {@code EmbeddedId}
+     */
+    public boolean isId() {
+        return id;
+    }
+
+    /**
+     * @return {@code true} if the property is a collection or a map
+     */
+    public boolean isCollection() {
+        return isCollection( type );
+    }
+
+    private static boolean isCollection( Class<?> type ) {
+        return Collection.class.isAssignableFrom( type ) || Map.class.isAssignableFrom( type );
+    }
+
+    /**
+     * @return {@code true} if a path may continue after this property
+     */
+    public boolean isNavigable() {
+        return association || embedded;
+    }
+
+    @Override
+    public String toString() {
+        return "EntityProperty[" + name + ": " + type.getName() + "]";
+    }
+}
@@ -0,0 +1,134 @@
+package org.adaptms.hqlbuilder.metadata;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks property paths of a query against {@link EntityMetadata}: every path must start with a known alias
+ * (or with a property of the root entity in queries without alias), and every step must be a mapped property,
+ * where all steps but the last are associations or embeddables.
+ * <p>
+ * Paths that are not plain dotted identifiers (functions, literals) and paths starting with an alias
+ * of unknown type are not checked. {@code id} is the identifier property of an entity, whatever its name,
+ * {@code class} is accepted on entities, and {@code size}, {@code elements} etc. after collections.
+ *
+ * @author ppolyakov at 18.10.2026 02:00
+ */
+public final class PathValidator {
+
+    private static final String ID_PROPERTY = "id";
+    private static final String CLASS_PROPERTY = "class";
+    // special HQL properties of collections
+    private static final Set<String> COLLECTION_PROPERTIES = new HashSet<>( Arrays.asList(
+            "size", "elements", "indices", "maxelement", "minelement", "maxindex", "minindex" ) );
+
+    private final PathValidator outer;
+    private final EntityMetadata root;
+    private final String rootAlias;
+    private final Map<String, EntityMetadata> aliases = new HashMap<>();
+
+    /**
+     * @param outer validator of the outer query for subqueries, {@code null} otherwise
+     * @param root metadata of the root entity, {@code null} if unknown
+     * @param rootAlias alias of the root entity, {@code null} for UPDATE and DELETE queries
+     */
+    public PathValidator( PathValidator outer, EntityMetadata root, String rootAlias ) {
+        this.outer = outer;
+        this.root = root;
+        this.rootAlias = rootAlias;
+        if ( rootAlias != null ) aliases.put( rootAlias, root );
+    }
+
+    /**
+     * Register alias of a joined entity
+     * @param alias alias
+     * @param metadata metadata of the joined entity, {@code null} if unknown
+     */
+    public void addAlias( String alias, EntityMetadata metadata ) {
+        if ( alias != null ) aliases.put( alias, metadata );
+    }
+
+    /**
+     * Check the path
+     * @param path property path, e.g. {@code te.reference.one}
+     * @throws IllegalStateException if the path doesn't match the entity model
+     */
+    public void validate( String path ) {
+        resolve( path );
+    }
+
+    /**
+     * Check the path and find the property it ends with
+     * @param path property path, e.g. {@code te.reference}
+     * @return last property of the path, {@code null} if the path is not checked or ends with {@code class}
+     * or a collection property
+     * @throws IllegalStateException if the path doesn't match the entity model
+     */
+    public EntityProperty resolve( String path ) {
+        if ( path == null ) return null;
+        String[] steps = path.split( "\\.", -1 );
+        for ( String step : steps ) {
+            if ( !isIdentifier( step ) ) return null;
+        }
+
+        EntityMetadata current;
+        int start;
+        if ( isAlias( steps[0] ) ) {
+            current = resolveAlias( steps[0] );
+            start = 1;
+        } else if ( rootAlias == null ) {
+            current = root;
+            start = 0;
+        } else {
+            throw new IllegalStateException( "Unknown alias \"" + steps[0] + "\" in path \"" + path + "\"." );
+        }
+
+        EntityProperty property = null;
+        for ( int i = start; i < steps.length; i++ ) {
+            if ( current == null ) return null;
+            // size, elements etc. of the collection the previous step ended with
+            if ( property != null && property.isCollection() && COLLECTION_PROPERTIES.contains( steps[i] ) && i == steps.length - 1 ) return null;
+
+            EntityProperty next = current.getProperty( steps[i] );
+            if ( next == null && current.isEntity() ) {
+                if ( ID_PROPERTY.equals( steps[i] ) ) next = current.getIdProperty();
+                else if ( CLASS_PROPERTY.equals( steps[i] ) && i == steps.length - 1 ) return null;
+            }
+            if ( next == null )
+                throw new IllegalStateException( "Class \"" + current.getName() + "\" has no mapped property \"" + steps[i] + "\", path \"" + path + "\"." );
+            property = next;
+
+            if ( i < steps.length - 1 && !property.isNavigable() ) {
+                if ( property.isCollection() && COLLECTION_PROPERTIES.contains( steps[i + 1] ) && i + 1 == steps.length - 1 ) return null;
+                throw new IllegalStateException( "Property \"" + steps[i] + "\" of class \"" + current.getName() + "\" is neither an association nor an embeddable, path \"" + path + "\"." );
+            }
+            current = EntityMetadata.of( property.getTargetType() );
+        }
+        return property;
+    }
+
+    private boolean isAlias( String name ) {
+        for ( PathValidator scope = this; scope != null; scope = scope.outer ) {
+            if ( scope.aliases.containsKey( name ) ) return true;
+        }
+        return false;
+    }
+
+    private EntityMetadata resolveAlias( String name ) {
+        for ( PathValidator scope = this; scope != null; scope = scope.outer ) {
+            if ( scope.aliases.containsKey( name ) ) return scope.aliases.get( name );
+        }
+        return null;
+    }
+
+    private static boolean isIdentifier( String name ) {
+        if ( name.isEmpty() || !Character.isJavaIdentifierStart( name.charAt( 0 ) ) ) return false;
+        for ( int i = 1; i < name.length(); i++ ) {
+            if ( !Character.isJavaIdentifierPart( name.charAt( i ) ) ) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,68 @@
+package org.adaptms.hqlbuilder.metrics;
+
+import org.adaptms.hqlbuilder.builder.BuilderMode;
+import org.adaptms.hqlbuilder.builder.QueryShape;
+
+/**
+ * Query was built, see {@link QueryListener#onBuild(BuildEvent)}
+ *
+ * @author ppolyakov at 18.10.2026 13:00
+ */
+public final class BuildEvent {
+
+    private final QueryShape shape;
+    private final String hql;
+    private final String rootEntityClass;
+    private final BuilderMode mode;
+    private final int variableCount;
+    private final boolean cacheHit;
+    private final long nanos;
+
+    public BuildEvent( QueryShape shape, String hql, String rootEntityClass, BuilderMode mode, int variableCount, boolean cacheHit, long nanos ) {
+        this.shape = shape;
+        this.hql = hql;
+        this.rootEntityClass = rootEntityClass;
+        this.mode = mode;
+        this.variableCount = variableCount;
+        this.cacheHit = cacheHit;
+        this.nanos = nanos;
+    }
+
+    public QueryShape getShape() {
+        return shape;
+    }
+
+    public String getHql() {
+        return hql;
+    }
+
+    public int getHqlLength() {
+        return hql.length();
+    }
+
+    public String getRootEntityClass() {
+        return rootEntityClass;
+    }
+
+    public BuilderMode getMode() {
+        return mode;
+    }
+
+    public int getVariableCount() {
+        return variableCount;
+    }
+
+    /**
+     * @return {@code true} if HQL was taken from {@link org.adaptms.hqlbuilder.builder.QueryCache} without rendering
+     */
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+
+    /**
+     * @return time spent in {@code build()}
+     */
+    public long getNanos() {
+        return nanos;
+    }
+}
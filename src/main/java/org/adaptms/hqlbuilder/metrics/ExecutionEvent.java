@@ -0,0 +1,54 @@
+package org.adaptms.hqlbuilder.metrics;
+
+import org.adaptms.hqlbuilder.builder.QueryShape;
+
+/**
+ * Query was executed, see {@link QueryListener#onExecute(ExecutionEvent)}
+ *
+ * @author ppolyakov at 18.10.2026 13:00
+ */
+public final class ExecutionEvent {
+
+    private final QueryShape shape;
+    private final String hql;
+    private final long rows;
+    private final long nanos;
+    private final Throwable error;
+
+    public ExecutionEvent( QueryShape shape, String hql, long rows, long nanos, Throwable error ) {
+        this.shape = shape;
+        this.hql = hql;
+        this.rows = rows;
+        this.nanos = nanos;
+        this.error = error;
+    }
+
+    public QueryShape getShape() {
+        return shape;
+    }
+
+    public String getHql() {
+        return hql;
+    }
+
+    /**
+     * @return rows read or affected by the query, {@code -1} if unknown
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return execution time, for streams until the stream was closed
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return exception thrown by the query, {@code null} if it succeeded
+     */
+    public Throwable getError() {
+        return error;
+    }
+}
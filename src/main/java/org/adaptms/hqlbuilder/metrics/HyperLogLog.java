@@ -0,0 +1,94 @@
+package org.adaptms.hqlbuilder.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free HyperLogLog estimate of the number of distinct strings, in 512 bytes whatever the number of strings.
+ * The standard error is about 4.6%; small cardinalities are counted almost exactly (linear counting).
+ * Strings are hashed over all their characters with 64 bits, so strings with the same {@link String#hashCode()}
+ * are still counted apart.
+ *
+ * @author ppolyakov at 18.10.2026 14:10
+ */
+public final class HyperLogLog {
+
+    private static final int PRECISION = 9;
+    private static final int REGISTERS = 1 << PRECISION;
+    // 8-bit registers, 8 in every long
+    private static final int PER_WORD = 8;
+    private static final double ALPHA = 0.7213 / ( 1 + 1.079 / REGISTERS );
+
+    private final AtomicLongArray registers = new AtomicLongArray( REGISTERS / PER_WORD );
+
+    /**
+     * @param value string to count
+     * @return {@code true} if the estimate may have changed
+     */
+    public boolean add( String value ) {
+        long hash = hash( value );
+        int register = ( int ) ( hash >>> ( 64 - PRECISION ) );
+        // position of the first set bit in the remaining bits, the register index bits are excluded by the sentinel
+        int rank = Long.numberOfLeadingZeros( ( hash << PRECISION ) | ( 1L << ( PRECISION - 1 ) ) ) + 1;
+
+        int word = register / PER_WORD;
+        int shift = ( register % PER_WORD ) * 8;
+        while ( true ) {
+            long current = registers.get( word );
+            if ( ( ( current >>> shift ) & 0xFF ) >= rank ) return false;
+            long updated = ( current & ~( 0xFFL << shift ) ) | ( ( long ) rank << shift );
+            if ( registers.compareAndSet( word, current, updated ) ) return true;
+        }
+    }
+
+    /**
+     * @return estimated number of distinct strings added
+     */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for ( int word = 0; word < REGISTERS / PER_WORD; word++ ) {
+            long registersOfWord = registers.get( word );
+            for ( int i = 0; i < PER_WORD; i++ ) {
+                int rank = ( int ) ( ( registersOfWord >>> ( i * 8 ) ) & 0xFF );
+                sum += 1.0 / ( 1L << rank );
+                if ( rank == 0 ) zeros++;
+            }
+        }
+
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if ( estimate <= 2.5 * REGISTERS && zeros > 0 ) estimate = REGISTERS * Math.log( ( double ) REGISTERS / zeros );
+        return Math.round( estimate );
+    }
+
+    public void clear() {
+        for ( int word = 0; word < REGISTERS / PER_WORD; word++ ) registers.set( word, 0 );
+    }
+
+    /**
+     * FNV-1a over the characters, then the 64-bit finalizer of MurmurHash3 to spread the bits over the whole long:
+     * the register index is taken from the high bits, which FNV alone mixes poorly
+     */
+    private static long hash( String value ) {
+        long hash = 0xcbf29ce484222325L;
+        for ( int i = 0; i < value.length(); i++ ) {
+            char c = value.charAt( i );
+            hash = ( hash ^ ( c & 0xFF ) ) * 0x100000001b3L;
+            hash = ( hash ^ ( c >>> 8 ) ) * 0x100000001b3L;
+        }
+        return mix( hash );
+    }
+
+    private static long mix( long hash ) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "HyperLogLog{estimate=" + estimate() + "}";
+    }
+}
@@ -0,0 +1,93 @@
+package org.adaptms.hqlbuilder.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative values with logarithmic buckets, in the manner of HdrHistogram:
+ * every power of two is split into 16 linear sub-buckets, so any recorded value is reported with a relative
+ * error below 7% in a fixed array of 960 counters, whatever the range of values.
+ *
+ * @author ppolyakov at 18.10.2026 13:00
+ */
+public final class LogHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = ( 63 - SUB_BUCKET_BITS + 1 ) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray( BUCKETS );
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator( Math::max, 0 );
+
+    /**
+     * @param value value to record, negative values are recorded as {@code 0}
+     */
+    public void record( long value ) {
+        if ( value < 0 ) value = 0;
+        counts.incrementAndGet( indexOf( value ) );
+        count.increment();
+        sum.add( value );
+        max.accumulate( value );
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long total = getCount();
+        return total == 0 ? 0 : ( double ) sum.sum() / total;
+    }
+
+    /**
+     * @param percentile percentile from {@code 0} to {@code 100}
+     * @return upper bound of the bucket holding the percentile, {@code 0} if nothing was recorded
+     */
+    public long getPercentile( double percentile ) {
+        if ( percentile < 0 || percentile > 100 ) throw new IllegalArgumentException( "Percentile must be between 0 and 100, got: " + percentile );
+
+        long total = 0;
+        long[] snapshot = new long[ BUCKETS ];
+        for ( int i = 0; i < BUCKETS; i++ ) {
+            snapshot[i] = counts.get( i );
+            total += snapshot[i];
+        }
+        if ( total == 0 ) return 0;
+
+        long rank = Math.max( 1, ( long ) Math.ceil( total * percentile / 100 ) );
+        long seen = 0;
+        for ( int i = 0; i < BUCKETS; i++ ) {
+            seen += snapshot[i];
+            if ( seen >= rank ) return Math.min( upperBoundOf( i ), getMax() );
+        }
+        return getMax();
+    }
+
+    static int indexOf( long value ) {
+        if ( value < SUB_BUCKETS ) return ( int ) value;
+        int exponent = 63 - Long.numberOfLeadingZeros( value );
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = ( int ) ( value >>> shift ) & ( SUB_BUCKETS - 1 );
+        return ( shift + 1 ) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf( int index ) {
+        if ( index < SUB_BUCKETS ) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = ( long ) ( SUB_BUCKETS + index % SUB_BUCKETS ) << shift;
+        return lower + ( 1L << shift ) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "LogHistogram{count=" + getCount() + ", mean=" + Math.round( getMean() ) + ", p50=" + getPercentile( 50 )
+                + ", p99=" + getPercentile( 99 ) + ", max=" + getMax() + "}";
+    }
+}
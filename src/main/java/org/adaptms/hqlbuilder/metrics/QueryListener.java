@@ -0,0 +1,24 @@
+package org.adaptms.hqlbuilder.metrics;
+
+/**
+ * Receives events about building and executing queries, see {@link QueryListeners}.
+ * Listeners are called on the thread that builds or executes the query and must be fast and thread-safe.
+ *
+ * @author ppolyakov at 18.10.2026 13:00
+ */
+public interface QueryListener {
+
+    /**
+     * Called after {@link org.adaptms.hqlbuilder.builder.HQLBuilder#build()}
+     * @param event build details
+     */
+    default void onBuild( BuildEvent event ) {
+    }
+
+    /**
+     * Called after a query was executed, by execution modules
+     * @param event execution details
+     */
+    default void onExecute( ExecutionEvent event ) {
+    }
+}
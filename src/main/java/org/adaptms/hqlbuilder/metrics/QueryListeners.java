@@ -0,0 +1,64 @@
+package org.adaptms.hqlbuilder.metrics;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide registry of {@link QueryListener}s. Without listeners builders don't measure anything,
+ * so instrumentation costs nothing until a listener is added.
+ * <p>
+ * Exceptions thrown by listeners are logged and don't break the query, except {@link QueryRejectedException}.
+ *
+ * @author ppolyakov at 18.10.2026 13:00
+ */
+public final class QueryListeners {
+
+    private static final Logger LOGGER = Logger.getLogger( QueryListeners.class.getName() );
+
+    private static final CopyOnWriteArrayList<QueryListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private QueryListeners() {
+    }
+
+    public static void add( QueryListener listener ) {
+        if ( null == listener ) throw new IllegalArgumentException( "QueryListener may not be null." );
+        LISTENERS.addIfAbsent( listener );
+    }
+
+    public static void remove( QueryListener listener ) {
+        LISTENERS.remove( listener );
+    }
+
+    /**
+     * @return {@code true} if there is at least one listener, i.e. events should be measured and fired
+     */
+    public static boolean isActive() {
+        // a volatile read of the list, no separate flag to get out of sync with it
+        return !LISTENERS.isEmpty();
+    }
+
+    public static void fireBuild( BuildEvent event ) {
+        for ( QueryListener listener : LISTENERS ) {
+            try {
+                listener.onBuild( event );
+            } catch ( QueryRejectedException e ) {
+                throw e;
+            } catch ( RuntimeException e ) {
+                LOGGER.log( Level.WARNING, "QueryListener " + listener + " failed on build.", e );
+            }
+        }
+    }
+
+    public static void fireExecute( ExecutionEvent event ) {
+        for ( QueryListener listener : LISTENERS ) {
+            try {
+                listener.onExecute( event );
+            } catch ( QueryRejectedException e ) {
+                throw e;
+            } catch ( RuntimeException e ) {
+                LOGGER.log( Level.WARNING, "QueryListener " + listener + " failed on execution.", e );
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package org.adaptms.hqlbuilder.metrics;
+
+/**
+ * Thrown by a {@link QueryListener} to reject a query. Unlike other listener exceptions it is not swallowed
+ * by {@link QueryListeners} and reaches the code that builds the query
+ *
+ * @author ppolyakov at 18.10.2026 14:10
+ */
+public class QueryRejectedException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public QueryRejectedException( String message ) {
+        super( message );
+    }
+}
@@ -0,0 +1,167 @@
+package org.adaptms.hqlbuilder.metrics;
+
+import org.adaptms.hqlbuilder.builder.QueryShape;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default {@link QueryListener} collecting statistics per {@link QueryShape}: number of builds and cache hits,
+ * build and execution time histograms, executed rows and errors. Counters are striped ({@link LongAdder}),
+ * so recording doesn't contend between threads.
+ * <p>
+ * At most {@link #getMaxShapes()} shapes are tracked; events of other shapes only go to {@link #getOverflow()}.
+ *
+ * @author ppolyakov at 18.10.2026 13:00
+ */
+public class QueryStatistics implements QueryListener {
+    public static final int DEFAULT_MAX_SHAPES = 1024;
+
+    private final int maxShapes;
+    private final ConcurrentMap<QueryShape, ShapeStatistics> shapes = new ConcurrentHashMap<>();
+    private volatile ShapeStatistics overflow = new ShapeStatistics( null );
+
+    public QueryStatistics() {
+        this( DEFAULT_MAX_SHAPES );
+    }
+
+    public QueryStatistics( int maxShapes ) {
+        if ( maxShapes < 0 ) throw new IllegalArgumentException( "Number of shapes may not be negative." );
+        this.maxShapes = maxShapes;
+    }
+
+    @Override
+    public void onBuild( BuildEvent event ) {
+        ShapeStatistics statistics = statisticsOf( event.getShape(), event.getHql() );
+        statistics.builds.increment();
+        if ( event.isCacheHit() ) statistics.cacheHits.increment();
+        statistics.buildTime.record( event.getNanos() );
+        statistics.variableCount = event.getVariableCount();
+    }
+
+    @Override
+    public void onExecute( ExecutionEvent event ) {
+        ShapeStatistics statistics = statisticsOf( event.getShape(), event.getHql() );
+        statistics.executionTime.record( event.getNanos() );
+        if ( event.getRows() > 0 ) statistics.rows.add( event.getRows() );
+        if ( event.getError() != null ) statistics.errors.increment();
+    }
+
+    private ShapeStatistics statisticsOf( QueryShape shape, String hql ) {
+        if ( shape == null ) return overflow;
+        ShapeStatistics statistics = shapes.get( shape );
+        if ( statistics != null ) return statistics;
+        if ( shapes.size() >= maxShapes ) return overflow;
+
+        ShapeStatistics created = new ShapeStatistics( hql );
+        statistics = shapes.putIfAbsent( shape, created );
+        return statistics != null ? statistics : created;
+    }
+
+    /**
+     * @return read-only live view of statistics by shape
+     */
+    public Map<QueryShape, ShapeStatistics> getShapes() {
+        return Collections.unmodifiableMap( shapes );
+    }
+
+    /**
+     * @param shape query shape
+     * @return statistics or {@code null} if the shape wasn't seen
+     */
+    public ShapeStatistics get( QueryShape shape ) {
+        return shapes.get( shape );
+    }
+
+    /**
+     * @return statistics of events without shape or of shapes over the limit
+     */
+    public ShapeStatistics getOverflow() {
+        return overflow;
+    }
+
+    public int getMaxShapes() {
+        return maxShapes;
+    }
+
+    /**
+     * Forget statistics of all shapes and of the overflow
+     */
+    public void reset() {
+        shapes.clear();
+        overflow = new ShapeStatistics( null );
+    }
+
+    /**
+     * Statistics of one query shape
+     */
+    public static final class ShapeStatistics {
+        private final String hql;
+        private final LongAdder builds = new LongAdder();
+        private final LongAdder cacheHits = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LogHistogram buildTime = new LogHistogram();
+        private final LogHistogram executionTime = new LogHistogram();
+        private volatile int variableCount;
+
+        private ShapeStatistics( String hql ) {
+            this.hql = hql;
+        }
+
+        /**
+         * @return HQL of the shape, {@code null} for overflow statistics
+         */
+        public String getHql() {
+            return hql;
+        }
+
+        public long getBuilds() {
+            return builds.sum();
+        }
+
+        public long getCacheHits() {
+            return cacheHits.sum();
+        }
+
+        public int getVariableCount() {
+            return variableCount;
+        }
+
+        /**
+         * @return histogram of build time in nanoseconds
+         */
+        public LogHistogram getBuildTime() {
+            return buildTime;
+        }
+
+        public long getExecutions() {
+            return executionTime.getCount();
+        }
+
+        /**
+         * @return histogram of execution time in nanoseconds
+         */
+        public LogHistogram getExecutionTime() {
+            return executionTime;
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "ShapeStatistics{builds=" + getBuilds() + ", cacheHits=" + getCacheHits() + ", executions=" + getExecutions()
+                    + ", rows=" + getRows() + ", errors=" + getErrors() + ", buildTime=" + buildTime + ", executionTime=" + executionTime
+                    + ", hql=" + hql + "}";
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.adaptms.hqlbuilder.metrics;
+
+import org.adaptms.hqlbuilder.builder.HQLBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * {@link QueryListener} watching for code that produces too many distinct HQL strings, e.g. by unpadded {@code in}
+ * lists, random variable names or predicates added in varying order. Every distinct string is a separate entry
+ * in the query plan cache of the provider and in the statement cache of the database, so such code evicts
+ * the plans of all other queries.
+ * <p>
+ * Distinct strings are counted per key - the root entity of the query or the call site of {@code build()} -
+ * with a {@link HyperLogLog} of 512 bytes. Once a key exceeds the threshold, the guard either logs a warning
+ * (once per key) or rejects every further build of the key with {@link QueryRejectedException}, which is meant for tests.
+ * At most {@link #getMaxKeys()} keys are tracked; when a new key comes, the least used one is forgotten.
+ * <p>
+ * {@link KeyMode#CALL_SITE} takes a stack trace on every build, use it to find the offending code rather than permanently.
+ *
+ * @author ppolyakov at 18.10.2026 14:10
+ */
+public class ShapeCardinalityGuard implements QueryListener {
+    public static final int DEFAULT_MAX_KEYS = 256;
+
+    private static final Logger LOGGER = Logger.getLogger( ShapeCardinalityGuard.class.getName() );
+
+    private static final String BUILDER_CLASS = HQLBuilder.class.getName();
+    private static final String METRICS_PACKAGE = ShapeCardinalityGuard.class.getPackage().getName() + ".";
+    private static final String JPA_PACKAGE = "org.adaptms.hqlbuilder.jpa.";
+
+    public enum KeyMode {
+        /** Distinct queries are counted per root entity class */
+        ROOT_ENTITY,
+        /** Distinct queries are counted per first stack frame outside of this library */
+        CALL_SITE
+    }
+
+    public enum Action {
+        /** Log a warning once per key */
+        WARN,
+        /** Throw {@link QueryRejectedException} */
+        FAIL
+    }
+
+    private final long threshold;
+    private final Action action;
+    private final KeyMode keyMode;
+    private final int maxKeys;
+    private final ConcurrentMap<String, KeyCardinality> keys = new ConcurrentHashMap<>();
+
+    public ShapeCardinalityGuard( long threshold, Action action ) {
+        this( threshold, action, KeyMode.ROOT_ENTITY, DEFAULT_MAX_KEYS );
+    }
+
+    public ShapeCardinalityGuard( long threshold, Action action, KeyMode keyMode, int maxKeys ) {
+        if ( threshold <= 0 ) throw new IllegalArgumentException( "Threshold must be positive, got: " + threshold );
+        if ( null == action ) throw new IllegalArgumentException( "Action may not be null." );
+        if ( null == keyMode ) throw new IllegalArgumentException( "KeyMode may not be null." );
+        if ( maxKeys <= 0 ) throw new IllegalArgumentException( "Number of keys must be positive, got: " + maxKeys );
+        this.threshold = threshold;
+        this.action = action;
+        this.keyMode = keyMode;
+        this.maxKeys = maxKeys;
+    }
+
+    @Override
+    public void onBuild( BuildEvent event ) {
+        String key = keyMode == KeyMode.CALL_SITE ? callSite() : String.valueOf( event.getRootEntityClass() );
+        KeyCardinality cardinality = cardinalityOf( key );
+        cardinality.builds.increment();
+
+        // the estimate only changes when a register of the sketch does
+        if ( cardinality.distinct.add( event.getHql() ) ) cardinality.estimate = cardinality.distinct.estimate();
+        if ( cardinality.estimate <= threshold ) return;
+
+        String message = "About " + cardinality.estimate + " distinct queries were built for " + key + ", the limit is " + threshold
+                + ". Pad in lists, use stable variable names and add predicates in a fixed order. Last query: " + event.getHql();
+        if ( action == Action.FAIL ) throw new QueryRejectedException( message );
+        if ( !cardinality.reported ) {
+            cardinality.reported = true;
+            LOGGER.warning( message );
+        }
+    }
+
+    private KeyCardinality cardinalityOf( String key ) {
+        KeyCardinality cardinality = keys.get( key );
+        if ( cardinality != null ) return cardinality;
+
+        if ( keys.size() >= maxKeys ) evictLeastUsed();
+        KeyCardinality created = new KeyCardinality( key );
+        cardinality = keys.putIfAbsent( key, created );
+        return cardinality != null ? cardinality : created;
+    }
+
+    private synchronized void evictLeastUsed() {
+        if ( keys.size() < maxKeys ) return;
+        KeyCardinality leastUsed = null;
+        for ( KeyCardinality cardinality : keys.values() ) {
+            if ( leastUsed == null || cardinality.getBuilds() < leastUsed.getBuilds() ) leastUsed = cardinality;
+        }
+        if ( leastUsed != null ) keys.remove( leastUsed.getKey() );
+    }
+
+    private static String callSite() {
+        for ( StackTraceElement frame : new Throwable().getStackTrace() ) {
+            String className = frame.getClassName();
+            if ( className.equals( BUILDER_CLASS ) || className.startsWith( BUILDER_CLASS + "$" ) ) continue;
+            if ( className.startsWith( METRICS_PACKAGE ) || className.startsWith( JPA_PACKAGE ) ) continue;
+            return frame.toString();
+        }
+        return "unknown";
+    }
+
+    /**
+     * @param limit maximum number of keys to return
+     * @return keys with the most distinct queries first
+     */
+    public List<KeyCardinality> getTop( int limit ) {
+        List<KeyCardinality> top = new ArrayList<>( keys.values() );
+        top.sort( ( one, another ) -> Long.compare( another.getEstimate(), one.getEstimate() ) );
+        return top.size() > limit ? new ArrayList<>( top.subList( 0, limit ) ) : top;
+    }
+
+    /**
+     * @return estimated number of distinct queries by key
+     */
+    public Map<String, Long> getCardinalities() {
+        Map<String, Long> cardinalities = new LinkedHashMap<>();
+        for ( KeyCardinality cardinality : getTop( Integer.MAX_VALUE ) ) cardinalities.put( cardinality.getKey(), cardinality.getEstimate() );
+        return Collections.unmodifiableMap( cardinalities );
+    }
+
+    public void reset() {
+        keys.clear();
+    }
+
+    public long getThreshold() {
+        return threshold;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public KeyMode getKeyMode() {
+        return keyMode;
+    }
+
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    /**
+     * Distinct queries of one key
+     */
+    public static final class KeyCardinality {
+        private final String key;
+        private final HyperLogLog distinct = new HyperLogLog();
+        private final LongAdder builds = new LongAdder();
+        private volatile long estimate;
+        private volatile boolean reported;
+
+        private KeyCardinality( String key ) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return estimated number of distinct HQL strings
+         */
+        public long getEstimate() {
+            return estimate;
+        }
+
+        public long getBuilds() {
+            return builds.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "KeyCardinality{key=" + key + ", estimate=" + estimate + ", builds=" + getBuilds() + "}";
+        }
+    }
+}
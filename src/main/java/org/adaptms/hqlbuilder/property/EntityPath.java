@@ -6,18 +6,44 @@ package org.adaptms.hqlbuilder.property;
 public class EntityPath {
     protected String previousPath;
 
+    private PathCache.Node node; // resolved lazily, see PathCache
+
     public EntityPath( String previousPath ) {
         this.previousPath = previousPath;
     }
 
+    EntityPath( String previousPath, PathCache.Node node ) {
+        this.previousPath = previousPath;
+        this.node = node;
+    }
+
+    /**
+     * Path to the property of this path. Returns the shared instance from {@link PathCache} when possible
+     * @param property property name
+     * @return path to the property
+     */
     protected EntityPath addToPrevious( String property ) {
+        PathCache.Node child = property != null ? child( property ) : null;
+        if ( child != null ) return child.entityPath;
         return new EntityPath( ( getPath() != null ? getPath() + "." : "" ) + ( property != null ? property : "" ) );
     }
 
     protected String step( String property ) {
+        PathCache.Node child = property != null ? child( property ) : null;
+        if ( child != null ) return child.path;
         return getPath() != null ? getPath() + "." + property : property;
     }
 
+    private PathCache.Node child( String property ) {
+        PathCache.Node current = node;
+        if ( current == null || current.isDetached() ) {
+            current = PathCache.node( getPath() );
+            if ( current == null ) return null;
+            node = current;
+        }
+        return current.child( property );
+    }
+
     public String getPath() { return previousPath; }
 
     /**
@@ -26,6 +52,7 @@ public class EntityPath {
      * @return QueryPath for String
      */
     public static EntityPath fromString( String path ) {
-        return new EntityPath( path );
+        PathCache.Node node = path != null ? PathCache.node( path ) : null;
+        return node != null ? node.entityPath : new EntityPath( path );
     }
 }
@@ -0,0 +1,185 @@
+package org.adaptms.hqlbuilder.property;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide trie of property paths. Every node is a path ({@code o.customer.address}) with its children keyed by
+ * property name, so navigating from a known path to its property is a single map lookup and returns the same
+ * path string and the same {@link EntityPath} instance every time.
+ * <p>
+ * The trie is bounded: once {@link #getMaxSize()} paths are stored, a new path replaces an old one chosen by the clock
+ * (second chance) algorithm, like in {@link org.adaptms.hqlbuilder.builder.QueryCache}. Removed nodes are detached:
+ * they drop their children, and {@link EntityPath}s still holding them look their path up again on the next step.
+ *
+ * @author ppolyakov at 18.10.2026 00:30
+ */
+public final class PathCache {
+    public static final int DEFAULT_MAX_SIZE = 16384;
+
+    private static volatile Node root = new Node( null );
+    private static volatile ConcurrentMap<String, Node> index = new ConcurrentHashMap<>();
+    private static final LongAdder EVICTIONS = new LongAdder();
+
+    private static volatile boolean enabled = true;
+    private static volatile int maxSize = DEFAULT_MAX_SIZE;
+
+    // clock hand, guarded by the class lock
+    private static Iterator<Map.Entry<String, Node>> hand;
+
+    private PathCache() {
+    }
+
+    /**
+     * Find or create node of the path, evicting another path if the cache is full
+     * @param path full path, {@code null} for the root
+     * @return node or {@code null} if the cache is disabled
+     */
+    static Node node( String path ) {
+        if ( !enabled ) return null;
+        if ( path == null ) return root;
+
+        ConcurrentMap<String, Node> nodes = index;
+        Node node = nodes.get( path );
+        if ( node != null ) {
+            node.touch();
+            return node;
+        }
+        if ( maxSize == 0 ) return null;
+
+        if ( nodes.size() >= maxSize ) evict();
+        node = new Node( path );
+        Node previous = nodes.putIfAbsent( path, node );
+        return previous != null ? previous : node;
+    }
+
+    /**
+     * Advance the clock hand until the cache has room for one more path
+     */
+    private static synchronized void evict() {
+        ConcurrentMap<String, Node> nodes = index;
+        // every path gets at most one second chance per call, so the sweep ends even under concurrent reads
+        int chances = nodes.size();
+        while ( nodes.size() >= maxSize && !nodes.isEmpty() ) {
+            if ( hand == null || !hand.hasNext() ) hand = nodes.entrySet().iterator();
+            if ( !hand.hasNext() ) return;
+
+            Map.Entry<String, Node> candidate = hand.next();
+            Node node = candidate.getValue();
+            if ( node.referenced && chances-- > 0 ) {
+                node.referenced = false;
+            } else if ( nodes.remove( candidate.getKey(), node ) ) {
+                unlink( nodes, node );
+                EVICTIONS.increment();
+            }
+        }
+    }
+
+    /**
+     * Remove the node from its parent and detach it
+     */
+    private static void unlink( ConcurrentMap<String, Node> nodes, Node node ) {
+        int dot = node.path.lastIndexOf( '.' );
+        Node parent = dot < 0 ? root : nodes.get( node.path.substring( 0, dot ) );
+        if ( parent != null ) parent.children.remove( node.path.substring( dot + 1 ), node );
+        node.detach();
+    }
+
+    /**
+     * Remove all cached paths. Nodes held by existing {@link EntityPath}s are detached, so the old trie can be collected
+     */
+    public static void clear() {
+        Node oldRoot;
+        ConcurrentMap<String, Node> oldIndex;
+        synchronized ( PathCache.class ) {
+            oldRoot = root;
+            oldIndex = index;
+            root = new Node( null );
+            index = new ConcurrentHashMap<>();
+            hand = null;
+        }
+        oldRoot.detach();
+        for ( Node node : oldIndex.values() ) {
+            node.detach();
+        }
+    }
+
+    public static int size() {
+        return index.size();
+    }
+
+    /**
+     * @return number of paths removed to make room for new ones since start
+     */
+    public static long getEvictions() {
+        return EVICTIONS.sum();
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled( boolean enabled ) {
+        PathCache.enabled = enabled;
+        if ( !enabled ) clear();
+    }
+
+    public static int getMaxSize() {
+        return maxSize;
+    }
+
+    public static void setMaxSize( int maxSize ) {
+        if ( maxSize < 0 ) throw new IllegalArgumentException( "Cache size may not be negative." );
+        PathCache.maxSize = maxSize;
+    }
+
+    static final class Node {
+        final String path;
+        final EntityPath entityPath;
+        private final ConcurrentMap<String, Node> children = new ConcurrentHashMap<>( 4 );
+        private volatile boolean referenced;
+        private volatile boolean detached;
+
+        private Node( String path ) {
+            this.path = path;
+            this.entityPath = new EntityPath( path, this );
+        }
+
+        /**
+         * @param property property name
+         * @return node of the property path or {@code null} if the cache is disabled
+         */
+        Node child( String property ) {
+            Node child = children.get( property );
+            if ( child != null ) {
+                child.touch();
+                return child;
+            }
+
+            child = node( path != null ? path + "." + property : property );
+            if ( child == null ) return null;
+            Node previous = children.putIfAbsent( property, child );
+            return previous != null ? previous : child;
+        }
+
+        /**
+         * @return {@code true} if the node was evicted or cleared and must not be navigated from anymore
+         */
+        boolean isDetached() {
+            return detached;
+        }
+
+        private void touch() {
+            // written only when it changes, so hot paths don't make every read a write
+            if ( !referenced ) referenced = true;
+        }
+
+        private void detach() {
+            detached = true;
+            children.clear();
+        }
+    }
+}
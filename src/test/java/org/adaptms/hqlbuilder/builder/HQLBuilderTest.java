@@ -1,16 +1,23 @@
 package org.adaptms.hqlbuilder.builder;
 
+import org.adaptms.hqlbuilder.expression.column.ColumnExpression;
+import org.adaptms.hqlbuilder.expression.column.ColumnExpressionType;
 import org.adaptms.hqlbuilder.expression.join.JoinType;
 import org.adaptms.hqlbuilder.expression.order.QueryOrderDirection;
 import org.junit.jupiter.api.Test;
 import org.adaptms.hqlbuilder.expression.Expressions;
+import org.adaptms.hqlbuilder.metadata.EntityMetadata;
 import org.adaptms.hqlbuilder.property.EntityPath;
 
 import javax.persistence.Entity;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 class HQLBuilderTest {
 
@@ -48,6 +55,70 @@ class HQLBuilderTest {
         assert builder.build().equals( "select te from org.adaptms.hqlbuilder.builder.HQLBuilderTest.TestEntity te where te.fieldOne = (select tt from org.adaptms.hqlbuilder.builder.HQLBuilderTest.TestEntity tt where tt.fieldTwo = :var_tt0)" );
     }
 
+    @Test
+    void subqueriesWithSameAlias() {
+        HQLBuilder first = HQLBuilder.select( TestEntity.class, "tt" ).column( TestEntity.alias( "tt" ).fieldOne() )
+                .where( Expressions.eq( TestEntity.alias( "tt" ).fieldTwo(), 1 ) );
+        HQLBuilder second = HQLBuilder.select( TestEntity.class, "tt" ).column( TestEntity.alias( "tt" ).fieldOne() )
+                .where( Expressions.eq( TestEntity.alias( "tt" ).fieldTwo(), 2 ) );
+
+        HQLBuilder builder = HQLBuilder.select( TestEntity.class, "tt" )
+                .where( Expressions.eq( TestEntity.alias( "tt" ).fieldTwo(), 0 ) )
+                .where( Expressions.in( TestEntity.alias( "tt" ).fieldOne(), first ) )
+                .where( Expressions.notIn( TestEntity.alias( "tt" ).fieldOne(), second ) )
+                .where( Expressions.eq( TestEntity.alias( "tt" ).fieldOne(), first ) )
+                .where( Expressions.gt( TestEntity.alias( "tt" ).fieldTwo(), 3 ) );
+
+        assert builder.build().endsWith( "where tt.fieldTwo = :var_tt0"
+                + " and tt.fieldOne in (select tt.fieldOne from org.adaptms.hqlbuilder.builder.HQLBuilderTest.TestEntity tt where tt.fieldTwo = :var_tt0_s1)"
+                + " and tt.fieldOne not in (select tt.fieldOne from org.adaptms.hqlbuilder.builder.HQLBuilderTest.TestEntity tt where tt.fieldTwo = :var_tt0_s2)"
+                + " and tt.fieldOne = (select tt.fieldOne from org.adaptms.hqlbuilder.builder.HQLBuilderTest.TestEntity tt where tt.fieldTwo = :var_tt0_s1)"
+                + " and tt.fieldTwo > :var_tt1" );
+
+        Map<String, Object> variables = builder.getVariables();
+        assert variables.size() == 4;
+        assert variables.get( "var_tt0" ).equals( 0 ) && variables.get( "var_tt1" ).equals( 3 );
+        assert variables.get( "var_tt0_s1" ).equals( 1 ) && variables.get( "var_tt0_s2" ).equals( 2 );
+        assert first.getVariables().keySet().equals( Collections.singleton( "var_tt0" ) );
+    }
+
+    @Test
+    void nestedSubqueriesAreRenamed() {
+        HQLBuilder inner = HQLBuilder.select( TestEntity.class, "tt" ).column( TestEntity.alias( "tt" ).fieldOne() )
+                .where( Expressions.eq( TestEntity.alias( "tt" ).fieldTwo(), 1 ) );
+        HQLBuilder middle = HQLBuilder.select( TestEntity.class, "tt" ).column( TestEntity.alias( "tt" ).fieldOne() )
+                .where( Expressions.eq( TestEntity.alias( "tt" ).fieldTwo(), 2 ) )
+                .where( Expressions.in( TestEntity.alias( "tt" ).fieldOne(), inner ) );
+        HQLBuilder builder = HQLBuilder.select( TestEntity.class, "tt" )
+                .where( Expressions.eq( TestEntity.alias( "tt" ).fieldTwo(), 0 ) )
+                .where( Expressions.in( TestEntity.alias( "tt" ).fieldOne(), middle ) );
+
+        assert builder.build().endsWith( "where tt.fieldTwo = :var_tt0"
+                + " and tt.fieldOne in (select tt.fieldOne from org.adaptms.hqlbuilder.builder.HQLBuilderTest.TestEntity tt where tt.fieldTwo = :var_tt0_s2"
+                + " and tt.fieldOne in (select tt.fieldOne from org.adaptms.hqlbuilder.builder.HQLBuilderTest.TestEntity tt where tt.fieldTwo = :var_tt0_s1))" );
+
+        Map<String, Object> variables = builder.getVariables();
+        assert variables.size() == 3;
+        assert variables.get( "var_tt0" ).equals( 0 ) && variables.get( "var_tt0_s1" ).equals( 1 ) && variables.get( "var_tt0_s2" ).equals( 2 );
+    }
+
+    @Test
+    void attachedSubqueryIsCopied() {
+        HQLBuilder subquery = HQLBuilder.select( TestEntity.class, "tt" ).column( TestEntity.alias( "tt" ).fieldOne() )
+                .where( Expressions.eq( TestEntity.alias( "tt" ).fieldTwo(), 1 ) );
+        HQLBuilder builder = HQLBuilder.select( TestEntity.class, "te" )
+                .where( Expressions.in( TestEntity.alias( "te" ).fieldOne(), subquery ) );
+        String hql = builder.build();
+        QueryShape shape = QueryShape.of( builder );
+
+        subquery.where( Expressions.eq( TestEntity.alias( "tt" ).fieldOne(), "changed" ) );
+
+        assert builder.build().equals( hql );
+        assert QueryShape.of( builder ).equals( shape );
+        assert builder.getVariables().size() == 1;
+        assert subquery.build().endsWith( "tt.fieldOne = :var_tt1" );
+    }
+
     @Test
     void selectQueryWithCollection() {
         List<String> options = new ArrayList<>( Arrays.asList( "option1", "anotherOption", "someOther Text" ) );
@@ -120,6 +191,416 @@ class HQLBuilderTest {
                 && build.contains( " where fieldOne = :var_" );
     }
 
+    @Test
+    void updateQueryIsDeterministic() {
+        HQLBuilder first = HQLBuilder.update( TestEntity.class )
+                .set( TestEntity.root().fieldOne(), "test new" )
+                .where( Expressions.eq( TestEntity.root().fieldOne(), "test" ) );
+        HQLBuilder second = HQLBuilder.update( TestEntity.class )
+                .set( TestEntity.root().fieldOne(), "another" )
+                .where( Expressions.eq( TestEntity.root().fieldOne(), "old" ) );
+
+        assert first.build().equals( "update org.adaptms.hqlbuilder.builder.HQLBuilderTest.TestEntity set fieldOne = :var_update0 where fieldOne = :var_update1" );
+        assert first.build() == second.build();
+    }
+
+    @Test
+    void positionalParameters() {
+        HQLBuilder builder = HQLBuilder.select( TestEntity.class, "te" );
+        builder.setParameterNaming( ParameterNaming.POSITIONAL );
+        builder
+                .where( Expressions.eq( TestEntity.alias( "te" ).fieldOne(), "abc" ) )
+                .where( Expressions.in( TestEntity.alias( "te" ).fieldTwo(), Arrays.asList( 1, 2 ) ) );
+
+        assert builder.build().endsWith( "where te.fieldOne = ?1 and te.fieldTwo in (?2)" );
+        assert builder.getVariables().get( "1" ).equals( "abc" ) && builder.getVariables().get( "2" ).equals( Arrays.asList( 1, 2 ) );
+        assert builder.toCountQuery().build().endsWith( "where te.fieldOne = ?1 and te.fieldTwo in (?2)" );
+    }
+
+    @Test
+    void namedParametersAreNotMixedWithPositional() {
+        HQLBuilder positional = HQLBuilder.select( TestEntity.class, "te" );
+        positional.setParameterNaming( ParameterNaming.POSITIONAL );
+        try {
+            positional.where( Expressions.eq( TestEntity.alias( "te" ).fieldOne(), Expressions.param( "name" ) ) );
+            assert false : "Named parameter must be rejected";
+        } catch ( IllegalStateException ise ) {
+            assert ise.getMessage().contains( "\"name\"" );
+        }
+
+        HQLBuilder named = HQLBuilder.select( TestEntity.class, "te" )
+                .where( Expressions.eq( TestEntity.alias( "te" ).fieldOne(), Expressions.param( "name" ) ) );
+        try {
+            named.setParameterNaming( ParameterNaming.POSITIONAL );
+            assert false : "Naming must not change once a parameter is added";
+        } catch ( IllegalStateException expected ) {
+            // expected
+        }
+    }
+
+    @Test
+    void inListPaddingAndChunking() {
+        HQLBuilder padded = HQLBuilder.select( TestEntity.class, "te" );
+        padded.setInListPadding( true );
+        padded.where( Expressions.in( TestEntity.alias( "te" ).fieldTwo(), new Integer[] { 1, 2, 3 } ) );
+
+        assert padded.getVariables().get( "var_te0" ).equals( Arrays.asList( 1, 2, 3, 3 ) );
+
+        List<Integer> values = new ArrayList<>();
+        for ( int i = 0; i < 5; i++ ) values.add( i );
+
+        HQLBuilder chunked = HQLBuilder.select( TestEntity.class, "te" );
+        chunked.setInListPadding( true );
+        chunked.setInListChunkSize( 2 );
+        chunked
+                .where( Expressions.in( TestEntity.alias( "te" ).fieldTwo(), values ) )
+                .where( Expressions.notIn( TestEntity.alias( "te" ).fieldOne(), Arrays.asList( "a", "b", "c" ) ) );
+
+        assert chunked.build().endsWith( "where (te.fieldTwo in (:var_te0) or te.fieldTwo in (:var_te1) or te.fieldTwo in (:var_te2))"
+                + " and (te.fieldOne not in (:var_te3) and te.fieldOne not in (:var_te4))" );
+        assert chunked.getVariables().get( "var_te2" ).equals( Arrays.asList( 4 ) );
+        assert chunked.getVariables().get( "var_te4" ).equals( Arrays.asList( "c" ) );
+    }
+
+    @Test
+    void variableDeduplication() {
+        List<Integer> ids = Arrays.asList( 1, 2 );
+        HQLBuilder builder = HQLBuilder.select( TestEntity.class, "te" );
+        builder.setVariableDeduplication( true );
+        builder
+                .where( Expressions.eq( TestEntity.alias( "te" ).fieldOne(), "a" ) )
+                .where( Expressions.notEq( TestEntity.alias( "te" ).reference().one(), new String( "a" ) ) )
+                .where( Expressions.in( TestEntity.alias( "te" ).fieldTwo(), ids ) )
+                .where( Expressions.notIn( TestEntity.alias( "te" ).reference().another(), ids ) )
+                .where( Expressions.notIn( TestEntity.alias( "te" ).fieldTwo(), new ArrayList<>( ids ) ) );
+
+        assert builder.build().endsWith( "where te.fieldOne = :var_te0 and te.reference.one != :var_te0"
+                + " and te.fieldTwo in (:var_te1) and te.reference.another not in (:var_te1) and te.fieldTwo not in (:var_te2)" );
+        assert Arrays.equals( builder.getVariableValues(), new Object[] { "a", ids, ids } );
+
+        // clones share the variables, appending to one of them doesn't affect the other
+        HQLBuilder clone = HQLBuilder.clone( builder ).where( Expressions.eq( TestEntity.alias( "te" ).fieldOne(), "b" ) );
+        builder.where( Expressions.eq( TestEntity.alias( "te" ).fieldOne(), "c" ) );
+        assert clone.getVariables().get( "var_te3" ).equals( "b" ) && builder.getVariables().get( "var_te3" ).equals( "c" );
+        assert clone.getVariables().size() == 4 && builder.getVariables().keySet().equals( clone.getVariables().keySet() );
+    }
+
+    @Test
+    void whereNormalization() {
+        TestEntity.DSL te = TestEntity.alias( "te" );
+        HQLBuilder normalized = HQLBuilder.select( TestEntity.class, "te" );
+        normalized.setWhereNormalization( true );
+        normalized
+                .where( Expressions.and(
+                        Expressions.or( Expressions.eq( te.fieldTwo(), 1 ), Expressions.or( Expressions.eq( te.fieldTwo(), 2 ), Expressions.in( te.fieldTwo(), Arrays.asList( 2, 3 ) ) ) ),
+                        Expressions.and( Expressions.isNotNull( te.reference() ), Expressions.eq( te.fieldOne(), "a" ) ) ) )
+                .where( Expressions.eq( te.fieldOne(), "a" ) );
+
+        assert normalized.build().endsWith( "where te.fieldOne = :var_te0 and te.fieldTwo in (:var_te1) and te.reference is not null" );
+        assert normalized.getVariables().size() == 2;
+        assert normalized.getVariables().get( "var_te1" ).equals( Arrays.asList( 1, 2, 3 ) );
+
+        // same filter in another order shares the query
+        HQLBuilder reordered = HQLBuilder.select( TestEntity.class, "te" );
+        reordered.setWhereNormalization( true );
+        reordered.where( Expressions.and( Expressions.isNotNull( te.reference() ),
+                Expressions.or( Expressions.in( te.fieldTwo(), Arrays.asList( 7, 8 ) ), Expressions.eq( te.fieldTwo(), 9 ) ),
+                Expressions.eq( te.fieldOne(), "b" ) ) );
+        assert reordered.build().equals( normalized.build() );
+
+        // or of different properties and single-child groups
+        HQLBuilder plain = HQLBuilder.select( TestEntity.class, "te" );
+        plain.setWhereNormalization( true );
+        plain.where( Expressions.or( Expressions.eq( te.fieldTwo(), 1 ), Expressions.eq( te.fieldOne(), "a" ), Expressions.eq( te.fieldTwo(), 1 ) ) );
+        assert plain.build().endsWith( "where (te.fieldOne = :var_te0 or te.fieldTwo = :var_te1)" );
+    }
+
+    @Test
+    void cloneIsIsolatedFromSource() {
+        HQLBuilder base = HQLBuilder.select( TestEntity.class, "te" )
+                .where( Expressions.eq( TestEntity.alias( "te" ).fieldOne(), "abc" ) );
+        String baseQuery = base.build();
+
+        HQLBuilder sorted = HQLBuilder.clone( base ).orderBy( TestEntity.alias( "te" ).fieldTwo() );
+        HQLBuilder filtered = HQLBuilder.clone( base ).where( Expressions.gt( TestEntity.alias( "te" ).fieldTwo(), 5 ) );
+        base.where( Expressions.isNotNull( TestEntity.alias( "te" ).reference() ) );
+
+        assert sorted.build().equals( baseQuery + " order by te.fieldTwo asc" );
+        assert filtered.build().equals( baseQuery + " and te.fieldTwo > :var_te1" );
+        assert base.build().equals( baseQuery + " and te.reference is not null" );
+        assert base.getVariables().size() == 1 && sorted.getVariables().size() == 1;
+        assert filtered.getVariables().get( "var_te1" ).equals( 5 );
+    }
+
+    @Test
+    void clauseListsAreModifiableViews() {
+        HQLBuilder base = HQLBuilder.select( TestEntity.class, "te" ).column( TestEntity.alias( "te" ).fieldOne() );
+        HQLBuilder clone = HQLBuilder.clone( base );
+        String cloneQuery = clone.build();
+
+        base.getColumns().add( new ColumnExpression( "te.fieldTwo", ColumnExpressionType.DEFAULT ) );
+        assert base.build().startsWith( "select te.fieldOne, te.fieldTwo from" );
+        base.getColumns().remove( 0 );
+        assert base.build().startsWith( "select te.fieldTwo from" );
+        base.getColumns().clear();
+        assert base.build().startsWith( "select te from" );
+
+        assert clone.getColumns().size() == 1;
+        assert clone.build().equals( cloneQuery );
+    }
+
+    @Test
+    void derivedCountAndExistsQueries() {
+        HQLBuilder base = HQLBuilder.select( TestEntity.class, "te" )
+                .where( Expressions.eq( TestEntity.alias( "te" ).fieldOne(), "abc" ) )
+                .orderBy( TestEntity.alias( "te" ).fieldTwo() );
+
+        assert base.toCountQuery().build().equals( "select count(te) from org.adaptms.hqlbuilder.builder.HQLBuilderTest.TestEntity te where te.fieldOne = :var_te0" );
+        assert base.toExistsQuery().build().equals( "select 1 from org.adaptms.hqlbuilder.builder.HQLBuilderTest.TestEntity te where te.fieldOne = :var_te0" );
+        assert base.toCountQuery().getVariables().equals( base.getVariables() );
+        assert base.build().endsWith( "order by te.fieldTwo asc" );
+
+        HQLBuilder joined = HQLBuilder.clone( base )
+                .join( JoinType.LEFT, AnotherTestEntity.class, "ate", Expressions.eq( AnotherTestEntity.alias( "ate" ).another(), TestEntity.alias( "te" ).fieldOne() ) );
+        assert joined.toCountQuery().build().startsWith( "select count(distinct te) from" );
+
+        HQLBuilder distinct = HQLBuilder.select( TestEntity.class, "te" )
+                .column( TestEntity.alias( "te" ).fieldOne(), ColumnExpressionType.DISTINCT );
+        assert distinct.toCountQuery().build().startsWith( "select count(distinct te.fieldOne) from" );
+    }
+
+    @Test
+    void derivedSelectQuery() {
+        HQLBuilder update = HQLBuilder.update( TestEntity.class );
+        update.setVariableDeduplication( true );
+        update.set( TestEntity.root().fieldOne(), "a" )
+                .where( Expressions.eq( TestEntity.root().fieldOne(), "a" ) )
+                .set( TestEntity.root().fieldTwo(), 5 )
+                .where( Expressions.gt( TestEntity.root().fieldTwo(), 5 ) );
+        assert update.getVariables().size() == 4 : "SET values are not shared with the where clause";
+
+        HQLBuilder select = update.toSelectQuery().column( TestEntity.root().fieldTwo() );
+        assert select.build().equals( "select fieldTwo from org.adaptms.hqlbuilder.builder.HQLBuilderTest.TestEntity where fieldOne = :var_update1 and fieldTwo > :var_update3" );
+        assert select.getVariables().keySet().equals( new HashSet<>( Arrays.asList( "var_update1", "var_update3" ) ) );
+        assert select.where( Expressions.lt( TestEntity.root().fieldTwo(), 9 ) ).build().endsWith( "fieldTwo < :var_select4" );
+        assert update.getVariables().size() == 4;
+
+        try {
+            HQLBuilder.select( TestEntity.class, "te" ).toSelectQuery();
+            assert false : "Only UPDATE and DELETE queries may be turned into select query";
+        } catch ( IllegalStateException expected ) {
+            // expected
+        }
+    }
+
+    @Test
+    void associationJoins() {
+        HQLBuilder fetched = HQLBuilder.select( TestEntity.class, "te" )
+                .joinFetch( JoinType.LEFT, TestEntity.alias( "te" ).reference(), "ate" )
+                .where( Expressions.eq( AnotherTestEntity.alias( "ate" ).one(), "a" ) )
+                .orderBy( TestEntity.alias( "te" ).fieldTwo() );
+        fetched.setPathValidation( true );
+        assert fetched.build().equals( "select te from org.adaptms.hqlbuilder.builder.HQLBuilderTest.TestEntity te left join fetch te.reference ate where ate.one = :var_te0 order by te.fieldTwo asc" );
+
+        // derived queries keep the join and the rows it filters, but don't fetch
+        assert fetched.toCountQuery().build().equals( "select count(distinct te) from org.adaptms.hqlbuilder.builder.HQLBuilderTest.TestEntity te left join te.reference ate where ate.one = :var_te0" );
+        assert fetched.toExistsQuery().build().equals( "select 1 from org.adaptms.hqlbuilder.builder.HQLBuilderTest.TestEntity te left join te.reference ate where ate.one = :var_te0" );
+        assert fetched.build().contains( "left join fetch te.reference ate" );
+
+        HQLBuilder counted = HQLBuilder.clone( fetched ).column( TestEntity.alias( "te" ), ColumnExpressionType.COUNT );
+        try {
+            counted.build();
+            assert false : "Fetch join must not be combined with count";
+        } catch ( IllegalStateException ise ) {
+            assert ise.getMessage().contains( "toCountQuery()" );
+        }
+
+        HQLBuilder joined = HQLBuilder.select( TestEntity.class, "te" )
+                .join( JoinType.INNER, TestEntity.alias( "te" ).reference(), "ate", Expressions.eq( AnotherTestEntity.alias( "ate" ).another(), 1 ) )
+                .joinFetch( JoinType.INNER, TestEntity.alias( "te" ).reference() );
+        assert joined.build().equals( "select te from org.adaptms.hqlbuilder.builder.HQLBuilderTest.TestEntity te inner join te.reference ate with ate.another = :var_te0 inner join fetch te.reference" );
+        // fetch and plain joins of the same path have different shapes
+        assert !QueryShape.of( joined ).equals( QueryShape.of( HQLBuilder.select( TestEntity.class, "te" )
+                .join( JoinType.INNER, TestEntity.alias( "te" ).reference(), "ate", Expressions.eq( AnotherTestEntity.alias( "ate" ).another(), 1 ) )
+                .join( JoinType.INNER, TestEntity.alias( "te" ).reference(), null ) ) );
+
+        try {
+            HQLBuilder.select( TestEntity.class, "te" ).joinFetch( JoinType.RIGHT, TestEntity.alias( "te" ).reference() );
+            assert false : "Right join must not fetch";
+        } catch ( IllegalArgumentException expected ) {
+            // expected
+        }
+        try {
+            HQLBuilder.update( TestEntity.class ).joinFetch( JoinType.LEFT, TestEntity.root().reference() );
+            assert false : "Update must not fetch";
+        } catch ( IllegalStateException expected ) {
+            // expected
+        }
+        assertInvalid( HQLBuilder.select( TestEntity.class, "te" ).join( JoinType.LEFT, TestEntity.alias( "te" ).fieldOne(), "f" ), "can't be joined" );
+    }
+
+    @Test
+    void keysetPagination() {
+        HQLBuilder single = HQLBuilder.select( TestEntity.class, "te" )
+                .orderBy( TestEntity.alias( "te" ).fieldTwo(), QueryOrderDirection.DESC )
+                .seekAfter( 10 );
+        assert single.build().endsWith( "where te.fieldTwo < :var_te0 order by te.fieldTwo desc" );
+
+        HQLBuilder multiple = HQLBuilder.select( TestEntity.class, "te" )
+                .where( Expressions.isNotNull( TestEntity.alias( "te" ).reference() ) )
+                .orderBy( TestEntity.alias( "te" ).fieldOne() )
+                .orderBy( TestEntity.alias( "te" ).fieldTwo(), QueryOrderDirection.DESC )
+                .seekAfter( "abc", 10 );
+        assert multiple.build().endsWith( "where te.reference is not null and (te.fieldOne > :var_te0 or (te.fieldOne = :var_te1 and te.fieldTwo < :var_te2))"
+                + " order by te.fieldOne asc, te.fieldTwo desc" );
+        assert multiple.getVariables().get( "var_te2" ).equals( 10 );
+    }
+
+    @Test
+    void sameShapeSharesRenderedQuery() {
+        HQLBuilder first = HQLBuilder.select( TestEntity.class, "te" )
+                .where( Expressions.eq( TestEntity.alias( "te" ).fieldOne(), "abc" ) );
+        HQLBuilder second = HQLBuilder.select( TestEntity.class, "te" )
+                .where( Expressions.eq( TestEntity.alias( "te" ).fieldOne(), "xyz" ) );
+
+        assert QueryShape.of( first ).equals( QueryShape.of( second ) );
+        assert first.build() == second.build();
+        assert first.getVariables().get( "var_te0" ).equals( "abc" );
+        assert second.getVariables().get( "var_te0" ).equals( "xyz" );
+    }
+
+    @Test
+    void differentShapesAreNotMixed() {
+        HQLBuilder eq = HQLBuilder.select( TestEntity.class, "te" )
+                .where( Expressions.eq( TestEntity.alias( "te" ).fieldOne(), "abc" ) );
+        HQLBuilder notEq = HQLBuilder.select( TestEntity.class, "te" )
+                .where( Expressions.notEq( TestEntity.alias( "te" ).fieldOne(), "abc" ) );
+
+        assert !QueryShape.of( eq ).equals( QueryShape.of( notEq ) );
+        assert eq.build().endsWith( "where te.fieldOne = :var_te0" );
+        assert notEq.build().endsWith( "where te.fieldOne != :var_te0" );
+    }
+
+    @Test
+    void appendToExistingBuffer() {
+        HQLBuilder builder = HQLBuilder.select( TestEntity.class, "te" )
+                .where( Expressions.or(
+                        Expressions.eq( TestEntity.alias( "te" ).fieldOne(), "abc" ),
+                        Expressions.in( TestEntity.alias( "te" ).fieldTwo(),
+                                HQLBuilder.select( TestEntity.class, "tt" ).column( TestEntity.alias( "tt" ).fieldTwo() ) )
+                ) );
+
+        StringBuilder buffer = new StringBuilder( "/* search */ " );
+        builder.appendTo( buffer );
+
+        assert buffer.toString().equals( "/* search */ " + builder.build() );
+        assert builder.build().endsWith( "where (te.fieldOne = :var_te0 or te.fieldTwo in (select tt.fieldTwo from org.adaptms.hqlbuilder.builder.HQLBuilderTest.TestEntity tt))" );
+    }
+
+    @Test
+    void preparedQueryBindsValuesLate() {
+        PreparedHql prepared = HQLBuilder.select( TestEntity.class, "te" )
+                .where( Expressions.eq( TestEntity.alias( "te" ).fieldOne(), Expressions.param( "one" ) ) )
+                .where( Expressions.in( TestEntity.alias( "te" ).fieldTwo(), Expressions.listParam( "twos" ) ) )
+                .where( Expressions.isNotNull( TestEntity.alias( "te" ).reference() ) )
+                .where( Expressions.notEq( TestEntity.alias( "te" ).fieldOne(), "fixed" ) )
+                .prepare();
+
+        assert prepared.getHql().equals( "select te from org.adaptms.hqlbuilder.builder.HQLBuilderTest.TestEntity te where te.fieldOne = :one and te.fieldTwo in (:twos) and te.reference is not null and te.fieldOne != :var_te0" );
+
+        Map<String, Object> first = prepared.bind( "abc", Arrays.asList( 1, 2 ) );
+        assert first.get( "one" ).equals( "abc" ) && first.get( "twos" ).equals( Arrays.asList( 1, 2 ) ) && first.get( "var_te0" ).equals( "fixed" );
+
+        Map<String, Object> values = new HashMap<>();
+        values.put( "one", "xyz" );
+        values.put( "twos", Collections.singletonList( 3 ) );
+        Map<String, Object> second = prepared.bind( values );
+        assert second.get( "one" ).equals( "xyz" ) && second.size() == 3;
+        assert first.get( "one" ).equals( "abc" );
+    }
+
+    @Test
+    void preparedQueryBindsNullValues() {
+        HQLBuilder builder = HQLBuilder.select( TestEntity.class, "te" )
+                .where( Expressions.eq( TestEntity.alias( "te" ).fieldOne(), Expressions.param( "one" ) ) )
+                .where( Expressions.eq( TestEntity.alias( "te" ).fieldTwo(), 2 ) );
+        Map<String, Object> defined = new HashMap<>( builder.getVariables() );
+        defined.put( "var_te0", null );
+        builder.setVariables( defined );
+        PreparedHql prepared = builder.prepare();
+        assert prepared.getHql().endsWith( "te.fieldOne = :one and te.fieldTwo = :var_te0" );
+
+        Map<String, Object> variables = prepared.bind( ( Object ) null );
+        assert variables.size() == 2 : "Every variable of the HQL must be bound: " + variables;
+        assert variables.containsKey( "one" ) && variables.get( "one" ) == null;
+        assert variables.containsKey( "var_te0" ) && variables.get( "var_te0" ) == null;
+    }
+
+    @Test
+    void pathsAreInterned() {
+        EntityPath first = TestEntity.alias( "te" ).reference().one();
+        EntityPath second = TestEntity.alias( "te" ).reference().one();
+
+        assert first == second;
+        assert first.getPath().equals( "te.reference.one" );
+        assert EntityPath.fromString( "te.reference.one" ) == first;
+        assert TestEntity.root().fieldOne().getPath().equals( "fieldOne" );
+    }
+
+    @Test
+    void entityMetadataIsResolvedOnce() throws ClassNotFoundException {
+        EntityMetadata metadata = EntityMetadata.of( TestEntity.class );
+
+        assert metadata == EntityMetadata.of( TestEntity.class.getName() );
+        assert metadata.getName().equals( "org.adaptms.hqlbuilder.builder.HQLBuilderTest.TestEntity" );
+        assert metadata.getProperties().keySet().equals( new HashSet<>( Arrays.asList( "fieldOne", "fieldTwo", "reference" ) ) );
+        assert metadata.getProperty( "reference" ).isAssociation();
+        assert HQLBuilder.select( TestEntity.class, "te" ).getRootEntity() == metadata;
+
+        try {
+            HQLBuilder.select( String.class, "s" );
+            assert false;
+        } catch ( IllegalStateException ise ) {
+            assert ise.getMessage().contains( "is not an Entity" );
+        }
+    }
+
+    @Test
+    void pathValidation() {
+        HQLBuilder valid = HQLBuilder.select( TestEntity.class, "te" )
+                .join( JoinType.LEFT, AnotherTestEntity.class, "at", Expressions.eq( AnotherTestEntity.alias( "at" ).another(), TestEntity.alias( "te" ).fieldOne() ) )
+                .column( TestEntity.alias( "te" ).reference().one() )
+                .where( Expressions.in( TestEntity.alias( "te" ).fieldTwo(),
+                        HQLBuilder.select( TestEntity.class, "tt" ).column( TestEntity.alias( "tt" ).fieldTwo() )
+                                .where( Expressions.eq( TestEntity.alias( "tt" ).fieldOne(), TestEntity.alias( "te" ).fieldOne() ) ) ) )
+                .orderBy( EntityPath.fromString( "te.class" ) );
+        valid.setPathValidation( true );
+        valid.build();
+
+        HQLBuilder update = HQLBuilder.update( TestEntity.class ).set( TestEntity.root().fieldOne(), "abc" );
+        update.setPathValidation( true );
+        update.build();
+
+        assertInvalid( HQLBuilder.select( TestEntity.class, "te" ).column( "te.fieldThree" ), "has no mapped property \"fieldThree\"" );
+        assertInvalid( HQLBuilder.select( TestEntity.class, "te" ).column( "te.fieldOne.length" ), "neither an association nor an embeddable" );
+        assertInvalid( HQLBuilder.select( TestEntity.class, "te" ).orderBy( EntityPath.fromString( "x.fieldOne" ) ), "Unknown alias \"x\"" );
+        assertInvalid( HQLBuilder.select( TestEntity.class, "te" )
+                .where( Expressions.eq( EntityPath.fromString( "te.reference.three" ), 3 ) ), "has no mapped property \"three\"" );
+        // TestEntity has no identifier, and reference is not a collection
+        assertInvalid( HQLBuilder.select( TestEntity.class, "te" ).orderBy( EntityPath.fromString( "te.id" ) ), "has no mapped property \"id\"" );
+        assertInvalid( HQLBuilder.select( TestEntity.class, "te" ).column( "te.reference.size" ), "has no mapped property \"size\"" );
+    }
+
+    private static void assertInvalid( HQLBuilder builder, String message ) {
+        builder.setPathValidation( true );
+        try {
+            builder.build();
+            assert false : "Path validation must fail";
+        } catch ( IllegalStateException ise ) {
+            assert ise.getMessage().contains( message ) : ise.getMessage();
+        }
+    }
+
     @Entity
     public static class TestEntity {
 
@@ -0,0 +1,50 @@
+package org.adaptms.hqlbuilder.builder;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class QueryCacheTest {
+
+    @BeforeEach
+    void setUp() {
+        QueryCache.clear();
+        QueryCache.setMaxSize( 3 );
+    }
+
+    @AfterEach
+    void tearDown() {
+        QueryCache.setMaxSize( QueryCache.DEFAULT_MAX_SIZE );
+        QueryCache.clear();
+    }
+
+    @Test
+    void fullCacheEvictsShapesThatWereNotRead() {
+        QueryCache.put( shape( "hot" ), "hot" );
+        QueryCache.put( shape( "cold" ), "cold" );
+        QueryCache.put( shape( "warm" ), "warm" );
+        assert QueryCache.get( shape( "hot" ) ).equals( "hot" );
+        assert QueryCache.get( shape( "warm" ) ).equals( "warm" );
+        long evictions = QueryCache.getEvictions();
+
+        assert QueryCache.put( shape( "new" ), "new" ).equals( "new" );
+
+        assert QueryCache.size() == 3 && QueryCache.getEvictions() == evictions + 1;
+        assert QueryCache.get( shape( "cold" ) ) == null;
+        assert QueryCache.get( shape( "new" ) ).equals( "new" );
+        assert QueryCache.get( shape( "hot" ) ).equals( "hot" ) && QueryCache.get( shape( "warm" ) ).equals( "warm" );
+    }
+
+    @Test
+    void burstOfUniqueShapesKeepsCacheBounded() {
+        for ( int i = 0; i < 100; i++ ) {
+            QueryCache.put( shape( "unique" + i ), "unique" + i );
+        }
+        assert QueryCache.size() == 3;
+        assert QueryCache.get( shape( "unique99" ) ).equals( "unique99" );
+    }
+
+    private static QueryShape shape( String token ) {
+        return QueryShape.builder().add( token ).toShape();
+    }
+}
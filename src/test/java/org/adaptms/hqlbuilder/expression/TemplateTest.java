@@ -0,0 +1,94 @@
+package org.adaptms.hqlbuilder.expression;
+
+import org.adaptms.hqlbuilder.IBuildable;
+import org.junit.jupiter.api.Test;
+
+class TemplateTest {
+
+    @Test
+    void textAroundPlaceholders() {
+        assert render( "({0} between {1} and {2})", "a", 1, 2 ).equals( "(a between 1 and 2)" );
+        assert render( "{0}{1}", "a", "b" ).equals( "ab" );
+        assert render( "no placeholders" ).equals( "no placeholders" );
+        assert render( "" ).isEmpty();
+    }
+
+    @Test
+    void repeatedAndOutOfOrderPlaceholders() {
+        assert render( "{1} = {0} or {1} is null", "a", "b" ).equals( "b = a or b is null" );
+        assert render( "{2}{0}{2}", "x", "unused", "y" ).equals( "yxy" );
+    }
+
+    @Test
+    void overloadsWithFewerArguments() {
+        Template one = Template.compile( "not {0}" );
+        StringBuilder builder = new StringBuilder();
+        one.appendTo( builder, "a" );
+        assert builder.toString().equals( "not a" );
+
+        Template two = Template.compile( "{0} = {1}" );
+        builder.setLength( 0 );
+        two.appendTo( builder, "a", "b" );
+        assert builder.toString().equals( "a = b" );
+
+        builder.setLength( 0 );
+        try {
+            two.appendTo( builder, "a" );
+            assert false : "{1} must not be rendered with one argument";
+        } catch ( IllegalArgumentException iae ) {
+            assert iae.getMessage().contains( "{1}" );
+        }
+        assert builder.length() == 0;
+
+        try {
+            Template.compile( "{0} between {1} and {2}" ).appendTo( builder, "a", "b" );
+            assert false : "{2} must not be rendered with two arguments";
+        } catch ( IllegalArgumentException expected ) {
+            // expected
+        }
+        try {
+            two.appendTo( builder, new Object[] { "a" } );
+            assert false : "{1} must not be rendered with one argument";
+        } catch ( IllegalArgumentException expected ) {
+            // expected
+        }
+    }
+
+    @Test
+    void malformedPlaceholders() {
+        for ( String pattern : new String[] { "{x", "a {0", "{a}", "{}", "{-1}", "{ 0}" } ) {
+            try {
+                Template.compile( pattern );
+                assert false : "Template \"" + pattern + "\" must be rejected";
+            } catch ( IllegalArgumentException expected ) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    void buildableArgumentsAreRenderedIntoBuffer() {
+        IBuildable buildable = new IBuildable() {
+            @Override
+            public String build() {
+                throw new AssertionError( "Buildable must be appended, not built" );
+            }
+
+            @Override
+            public void appendTo( StringBuilder builder ) {
+                builder.append( "(select 1)" );
+            }
+        };
+
+        StringBuilder builder = new StringBuilder( "where " );
+        Template.compile( "{0} in {1}" ).appendTo( builder, "x", buildable );
+        assert builder.toString().equals( "where x in (select 1)" );
+    }
+
+    private static String render( String pattern, Object... arguments ) {
+        StringBuilder builder = new StringBuilder();
+        Template.compile( pattern ).appendTo( builder, arguments );
+        assert Template.compile( pattern ).getPattern().equals( pattern );
+        return builder.toString();
+    }
+}
@@ -0,0 +1,120 @@
+package org.adaptms.hqlbuilder.metadata;
+
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.ElementCollection;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+import javax.persistence.OneToMany;
+import javax.persistence.Transient;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+class PathValidatorTest {
+
+    @Test
+    void idIsTheIdentifierProperty() {
+        PathValidator validator = new PathValidator( null, EntityMetadata.of( Owner.class ), "o" );
+
+        assert validator.resolve( "o.id" ).getName().equals( "key" );
+        assert validator.resolve( "o.key" ).isId();
+        assert validator.resolve( "o.best.id" ).getName().equals( "code" );
+        assert validator.resolve( "o.class" ) == null;
+    }
+
+    @Test
+    void collectionPropertiesOnlyFollowCollections() {
+        PathValidator validator = new PathValidator( null, EntityMetadata.of( Owner.class ), "o" );
+
+        assert validator.resolve( "o.items.size" ) == null;
+        assert validator.resolve( "o.tags.elements" ) == null;
+        assertInvalid( validator, "o.best.size", "has no mapped property \"size\"" );
+        assertInvalid( validator, "o.key.size", "neither an association nor an embeddable" );
+        assertInvalid( validator, "o.items.size.value", "has no mapped property \"size\"" );
+    }
+
+    @Test
+    void propertyAccessMapsGetters() {
+        EntityMetadata item = EntityMetadata.of( Item.class );
+
+        assert item.getProperties().keySet().equals( new HashSet<>( Arrays.asList( "code", "name", "owner", "active" ) ) );
+        assert item.getIdProperty().getName().equals( "code" );
+        assert item.getProperty( "owner" ).isAssociation();
+
+        PathValidator validator = new PathValidator( null, item, "i" );
+        assert validator.resolve( "i.owner.items.size" ) == null;
+        assertInvalid( validator, "i.label", "has no mapped property \"label\"" );
+    }
+
+    private static void assertInvalid( PathValidator validator, String path, String message ) {
+        try {
+            validator.validate( path );
+            assert false : "Path validation must fail";
+        } catch ( IllegalStateException ise ) {
+            assert ise.getMessage().contains( message ) : ise.getMessage();
+        }
+    }
+
+    @Entity
+    public static class Owner {
+        @Id
+        private Long key;
+        @ManyToOne
+        private Item best;
+        @OneToMany( mappedBy = "owner" )
+        private List<Item> items;
+        @ElementCollection
+        private List<String> tags;
+    }
+
+    @Entity
+    public static class Item {
+        // not mapped, the entity uses property access
+        private String label;
+        private String code;
+        private String name;
+        private Owner owner;
+        private boolean active;
+
+        @Id
+        public String getCode() {
+            return code;
+        }
+
+        public void setCode( String code ) {
+            this.code = code;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName( String name ) {
+            this.name = name;
+        }
+
+        @ManyToOne
+        public Owner getOwner() {
+            return owner;
+        }
+
+        public void setOwner( Owner owner ) {
+            this.owner = owner;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive( boolean active ) {
+            this.active = active;
+        }
+
+        @Transient
+        public String getLabel() {
+            return label;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.adaptms.hqlbuilder.metrics;
+
+import org.junit.jupiter.api.Test;
+
+class HyperLogLogTest {
+
+    @Test
+    void distinctEstimate() {
+        HyperLogLog distinct = new HyperLogLog();
+        for ( int i = 0; i < 10000; i++ ) distinct.add( "select guard from TestEntity guard where guard.fieldTwo = " + i );
+        assert Math.abs( distinct.estimate() - 10000 ) < 1500 : distinct.estimate();
+    }
+
+    @Test
+    void stringsWithSameHashCodeAreCountedApart() {
+        // "Aa" and "BB" have the same String.hashCode(), so do all strings of ten such blocks
+        HyperLogLog distinct = new HyperLogLog();
+        for ( int i = 0; i < 1024; i++ ) {
+            StringBuilder value = new StringBuilder( "select guard from TestEntity guard where " );
+            for ( int bit = 0; bit < 10; bit++ ) value.append( ( i >>> bit & 1 ) == 0 ? "Aa" : "BB" );
+            distinct.add( value.toString() );
+        }
+        assert Math.abs( distinct.estimate() - 1024 ) < 150 : distinct.estimate();
+    }
+}
@@ -0,0 +1,17 @@
+package org.adaptms.hqlbuilder.metrics;
+
+import org.junit.jupiter.api.Test;
+
+class LogHistogramTest {
+
+    @Test
+    void histogramPercentiles() {
+        LogHistogram histogram = new LogHistogram();
+        for ( long i = 1; i <= 1000; i++ ) histogram.record( i * 1000 );
+
+        assert histogram.getCount() == 1000 && histogram.getMax() == 1000000;
+        long median = histogram.getPercentile( 50 );
+        assert median >= 500000 && median <= 500000 * 1.07 : median;
+        assert histogram.getPercentile( 100 ) == 1000000;
+    }
+}
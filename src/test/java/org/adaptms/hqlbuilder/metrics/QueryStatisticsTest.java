@@ -0,0 +1,96 @@
+package org.adaptms.hqlbuilder.metrics;
+
+import org.adaptms.hqlbuilder.builder.HQLBuilder;
+import org.adaptms.hqlbuilder.builder.QueryShape;
+import org.adaptms.hqlbuilder.expression.Expressions;
+import org.adaptms.hqlbuilder.property.EntityPath;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.Entity;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class QueryStatisticsTest {
+
+    private QueryStatistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = new QueryStatistics();
+        QueryListeners.add( statistics );
+    }
+
+    @AfterEach
+    void tearDown() {
+        QueryListeners.remove( statistics );
+    }
+
+    @Test
+    void buildStatistics() {
+        for ( int i = 0; i < 3; i++ ) {
+            HQLBuilder.select( StatsEntity.class, "stats" )
+                    .where( Expressions.eq( EntityPath.fromString( "stats.fieldTwo" ), i ) )
+                    .build();
+        }
+
+        HQLBuilder builder = HQLBuilder.select( StatsEntity.class, "stats" ).where( Expressions.eq( EntityPath.fromString( "stats.fieldTwo" ), 0 ) );
+        QueryStatistics.ShapeStatistics shape = statistics.get( QueryShape.of( builder ) );
+        assert shape.getBuilds() == 3 && shape.getCacheHits() >= 2;
+        assert shape.getVariableCount() == 1 && shape.getBuildTime().getCount() == 3;
+        assert shape.getHql().equals( builder.build() );
+    }
+
+    @Test
+    void resetClearsOverflow() {
+        QueryStatistics limited = new QueryStatistics( 0 );
+        QueryListeners.add( limited );
+        try {
+            HQLBuilder.select( StatsEntity.class, "stats" ).build();
+            assert limited.getShapes().isEmpty() && limited.getOverflow().getBuilds() == 1;
+
+            limited.reset();
+            assert limited.getOverflow().getBuilds() == 0;
+        } finally {
+            QueryListeners.remove( limited );
+        }
+    }
+
+    @Test
+    void concurrentRemoveDoesNotMuteListener() throws InterruptedException {
+        QueryListeners.remove( statistics );
+        QueryListener other = new QueryListener() {
+        };
+        AtomicBoolean muted = new AtomicBoolean();
+        Thread churn = new Thread( () -> {
+            for ( int i = 0; i < 20_000; i++ ) {
+                QueryListeners.add( other );
+                QueryListeners.remove( other );
+            }
+        } );
+        churn.start();
+        for ( int i = 0; i < 20_000; i++ ) {
+            QueryListeners.add( statistics );
+            if ( !QueryListeners.isActive() ) muted.set( true );
+            QueryListeners.remove( statistics );
+        }
+        churn.join();
+
+        assert !muted.get() : "Registered listener must not be muted";
+        assert !QueryListeners.isActive();
+        QueryListeners.add( statistics );
+    }
+
+    @Entity
+    public static class StatsEntity {
+        private Integer fieldTwo;
+
+        public Integer getFieldTwo() {
+            return fieldTwo;
+        }
+
+        public void setFieldTwo( Integer fieldTwo ) {
+            this.fieldTwo = fieldTwo;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.adaptms.hqlbuilder.metrics;
+
+import org.adaptms.hqlbuilder.builder.HQLBuilder;
+import org.adaptms.hqlbuilder.expression.Expressions;
+import org.adaptms.hqlbuilder.property.EntityPath;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.Entity;
+
+class ShapeCardinalityGuardTest {
+
+    private ShapeCardinalityGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        // distinct strings are counted exactly while there are few of them, so the guard fails on the 6th one
+        guard = new ShapeCardinalityGuard( 5, ShapeCardinalityGuard.Action.FAIL );
+        QueryListeners.add( guard );
+    }
+
+    @AfterEach
+    void tearDown() {
+        QueryListeners.remove( guard );
+    }
+
+    @Test
+    void failsOnceThresholdIsExceeded() {
+        // every query has one more predicate, i.e. is a new string for the plan cache
+        HQLBuilder builder = HQLBuilder.select( GuardEntity.class, "guard" );
+        int built = 0;
+        try {
+            for ( ; built < 20; built++ ) builder.where( Expressions.eq( EntityPath.fromString( "guard.fieldTwo" ), built ) ).build();
+            assert false;
+        } catch ( QueryRejectedException qre ) {
+            assert qre.getMessage().contains( GuardEntity.class.getCanonicalName() );
+        }
+        assert built == 5 : built;
+        assert guard.getTop( 1 ).get( 0 ).getKey().equals( GuardEntity.class.getCanonicalName() );
+        assert guard.getTop( 1 ).get( 0 ).getEstimate() == 6;
+    }
+
+    @Test
+    void sameQueryIsNotCounted() {
+        for ( int i = 0; i < 20; i++ ) {
+            HQLBuilder.select( GuardEntity.class, "guard" ).where( Expressions.eq( EntityPath.fromString( "guard.fieldTwo" ), i ) ).build();
+        }
+        assert guard.getCardinalities().get( GuardEntity.class.getCanonicalName() ) == 1;
+    }
+
+    @Entity
+    public static class GuardEntity {
+        private Integer fieldTwo;
+
+        public Integer getFieldTwo() {
+            return fieldTwo;
+        }
+
+        public void setFieldTwo( Integer fieldTwo ) {
+            this.fieldTwo = fieldTwo;
+        }
+    }
+}
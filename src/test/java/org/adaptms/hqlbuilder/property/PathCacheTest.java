@@ -0,0 +1,62 @@
+package org.adaptms.hqlbuilder.property;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PathCacheTest {
+
+    @BeforeEach
+    void setUp() {
+        PathCache.clear();
+        PathCache.setMaxSize( 3 );
+    }
+
+    @AfterEach
+    void tearDown() {
+        PathCache.setMaxSize( PathCache.DEFAULT_MAX_SIZE );
+        PathCache.clear();
+    }
+
+    @Test
+    void fullCacheEvictsPathsThatWereNotRead() {
+        EntityPath hot = EntityPath.fromString( "hot" );
+        EntityPath.fromString( "cold" );
+        EntityPath warm = EntityPath.fromString( "warm" );
+        assert EntityPath.fromString( "hot" ) == hot && EntityPath.fromString( "warm" ) == warm;
+        long evictions = PathCache.getEvictions();
+
+        EntityPath created = EntityPath.fromString( "new" );
+
+        assert PathCache.size() == 3 && PathCache.getEvictions() == evictions + 1;
+        assert EntityPath.fromString( "new" ) == created;
+        assert EntityPath.fromString( "hot" ) == hot && EntityPath.fromString( "warm" ) == warm;
+    }
+
+    @Test
+    void hotPathsAreCachedAfterBurstOfRarePaths() {
+        for ( int i = 0; i < 100; i++ ) {
+            EntityPath.fromString( "rare" + i );
+        }
+        assert PathCache.size() == 3;
+
+        EntityPath hot = EntityPath.fromString( "o.customer" );
+        assert EntityPath.fromString( "o.customer" ) == hot : "New paths must still be interned when the cache is full";
+    }
+
+    @Test
+    void evictedPathsAreDetached() {
+        EntityPath order = EntityPath.fromString( "o" );
+        PathCache.Node node = PathCache.node( "o" );
+        assert order.step( "customer" ).equals( "o.customer" );
+
+        PathCache.clear();
+        assert node.isDetached();
+
+        // the held path looks itself up again instead of navigating the old trie
+        EntityPath customer = order.addToPrevious( "customer" );
+        assert customer.getPath().equals( "o.customer" );
+        assert EntityPath.fromString( "o.customer" ) == customer;
+        assert PathCache.node( "o" ) != node;
+    }
+}